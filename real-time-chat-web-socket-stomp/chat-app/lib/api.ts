@@ -147,9 +147,13 @@ class ApiService {
   }
 
   // Search
-  async searchConversations(searchTerm: string, page = 0, size = 20) {
+  async searchConversations(
+    searchTerm: string,
+    cursor?: { cursorRank: number; cursorId: number },
+    limit = 20
+  ) {
     const response = await this.api.get('/api/v1/chat/conversations/search', {
-      params: { searchTerm, page, size },
+      params: { searchTerm, ...cursor, limit },
     });
     return response.data;
   }
@@ -102,10 +102,11 @@ export class WebSocketService {
       this.subscriptions.get(destination).unsubscribe();
     }
 
+    // Typing changes of one conversation arrive coalesced into a single batch
     const subscription = this.client.subscribe(destination, (message: IMessage) => {
       try {
-        const data = JSON.parse(message.body);
-        callback(data);
+        const updates = JSON.parse(message.body);
+        updates.forEach((update: any) => callback(update));
       } catch (error) {
         console.error('Error parsing typing indicator:', error);
       }
@@ -140,7 +141,8 @@ export class WebSocketService {
   subscribeToPresence(callback: (data: any) => void) {
     if (!this.client?.active) return;
 
-    const destination = '/topic/presence';
+    // Presence changes of conversation peers arrive in batches on the user queue
+    const destination = '/user/queue/presence';
 
     if (this.subscriptions.has(destination)) {
       this.subscriptions.get(destination).unsubscribe();
@@ -148,8 +150,8 @@ export class WebSocketService {
 
     const subscription = this.client.subscribe(destination, (message: IMessage) => {
       try {
-        const data = JSON.parse(message.body);
-        callback(data);
+        const updates = JSON.parse(message.body);
+        updates.forEach((update: any) => callback(update));
       } catch (error) {
         console.error('Error parsing presence update:', error);
       }
@@ -158,6 +160,40 @@ export class WebSocketService {
     this.subscriptions.set(destination, subscription);
   }
 
+  // Subscribe to resync batches, answered after requestResync
+  subscribeToResync(callback: (data: any) => void) {
+    if (!this.client?.active) return;
+
+    const destination = '/user/queue/resync';
+
+    if (this.subscriptions.has(destination)) {
+      this.subscriptions.get(destination).unsubscribe();
+    }
+
+    const subscription = this.client.subscribe(destination, (message: IMessage) => {
+      try {
+        callback(JSON.parse(message.body));
+      } catch (error) {
+        console.error('Error parsing resync batch:', error);
+      }
+    });
+
+    this.subscriptions.set(destination, subscription);
+  }
+
+  // Ask for the changes missed while disconnected; conversations flagged with reload must be refetched
+  requestResync(lastSeenMessageIds: Record<number, number>) {
+    if (!this.client?.active) {
+      console.log('⚠️ Cannot resync - WebSocket not connected');
+      return;
+    }
+
+    this.client.publish({
+      destination: '/app/chat/resync',
+      body: JSON.stringify({ lastSeenMessageIds }),
+    });
+  }
+
   // ✅ UPDATED: Send message with Firebase UID in path
   sendMessage(conversationId: number, content: string, messageType = 'TEXT') {
     if (!this.client?.active || !this.firebaseUserId) {
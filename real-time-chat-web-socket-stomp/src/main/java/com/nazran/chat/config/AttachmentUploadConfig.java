@@ -0,0 +1,36 @@
+package com.nazran.chat.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Configures the executor that uploads message attachments outside of the request
+ * and outside of any database transaction.
+ */
+@Configuration
+public class AttachmentUploadConfig {
+
+    @Value("${chat.attachment.upload.pool-size:8}")
+    private int poolSize;
+
+    @Value("${chat.attachment.upload.queue-capacity:100}")
+    private int queueCapacity;
+
+    /**
+     * Bounded pool for attachment uploads. Uploads beyond the queue capacity are rejected
+     * and the message is marked as failed instead of piling up.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor attachmentUploadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("attachment-upload-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+}
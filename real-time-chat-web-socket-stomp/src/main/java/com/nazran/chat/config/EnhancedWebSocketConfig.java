@@ -1,13 +1,19 @@
 package com.nazran.chat.config;
 
+import com.nazran.chat.realtime.OutboundSessionQueues;
+import com.nazran.chat.realtime.PayloadEncodingNegotiator;
+import com.nazran.chat.realtime.WebSocketCompressionRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 /**
  * Enhanced WebSocket configuration with heartbeat and connection tuning.
@@ -18,6 +24,22 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @RequiredArgsConstructor
 public class EnhancedWebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final OutboundSessionQueues outboundSessionQueues;
+    private final PayloadEncodingNegotiator payloadEncodingNegotiator;
+    private final WebSocketCompressionRegistry webSocketCompressionRegistry;
+
+    @Value("${chat.ws.send-time-limit-ms:15000}")
+    private int sendTimeLimit;
+
+    @Value("${chat.ws.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${chat.ws.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${chat.ws.time-to-first-message-ms:30000}")
+    private int timeToFirstMessage;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Create task scheduler for heartbeat
@@ -51,4 +73,37 @@ public class EnhancedWebSocketConfig implements WebSocketMessageBrokerConfigurer
 
         log.info("STOMP endpoints registered with SockJS fallback");
     }
+
+    /**
+     * Native WebSocket clients connect to {@code /ws/chat/websocket} and may negotiate CBOR
+     * or Smile payloads on CONNECT; SockJS clients always receive JSON.
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(payloadEncodingNegotiator.inboundInterceptor());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(payloadEncodingNegotiator.outboundInterceptor());
+    }
+
+    /**
+     * Bounds inbound frames and outbound buffering per session. Outbound frames are queued
+     * per session in priority lanes by {@link OutboundSessionQueues}; the send limits below
+     * remain as a safety net of the session decorator Spring puts in front of it.
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration
+                .setSendTimeLimit(sendTimeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit)
+                .setTimeToFirstMessage(timeToFirstMessage)
+                .addDecoratorFactory(outboundSessionQueues)
+                .addDecoratorFactory(webSocketCompressionRegistry);
+
+        log.info("WebSocket transport limits configured (send time: {} ms, send buffer: {} bytes, message size: {} bytes)",
+                sendTimeLimit, sendBufferSizeLimit, messageSizeLimit);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+package com.nazran.chat.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs STOMP channel handling on virtual threads.
+ * <p>
+ * Active only with {@code spring.threads.virtual.enabled=true} on Java 21 or later; with the
+ * same switch Spring Boot moves Tomcat request handling onto virtual threads. On Java 17 the
+ * condition does not match and the default platform thread pools stay in place.
+ * <p>
+ * Virtual threads remove the thread pool as the natural limit on concurrent blocking work,
+ * so inbound STOMP handling and HTTP requests are capped explicitly. The default caps follow
+ * the Hikari pool size, so a burst queues in memory instead of timing out on the pool.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadExecutionConfig implements WebSocketMessageBrokerConfigurer {
+
+    @Value("${chat.execution.inbound-concurrency-limit:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int inboundConcurrencyLimit;
+
+    @Value("${chat.execution.outbound-concurrency-limit:-1}")
+    private int outboundConcurrencyLimit;
+
+    @Value("${chat.execution.request-concurrency-limit:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int requestConcurrencyLimit;
+
+    @Value("${chat.execution.request-permit-timeout-ms:5000}")
+    private long requestPermitTimeoutMs;
+
+    @Bean
+    public SimpleAsyncTaskExecutor clientInboundChannelVirtualExecutor() {
+        return createVirtualExecutor("ws-inbound-", inboundConcurrencyLimit);
+    }
+
+    @Bean
+    public SimpleAsyncTaskExecutor clientOutboundChannelVirtualExecutor() {
+        return createVirtualExecutor("ws-outbound-", outboundConcurrencyLimit);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.executor(clientInboundChannelVirtualExecutor());
+        log.info("Client inbound channel runs on virtual threads (concurrency limit: {})", inboundConcurrencyLimit);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(clientOutboundChannelVirtualExecutor());
+        log.info("Client outbound channel runs on virtual threads (concurrency limit: {})", outboundConcurrencyLimit);
+    }
+
+    /**
+     * Caps the number of HTTP requests processed at the same time. Requests waiting longer
+     * than the permit timeout are answered with 503 instead of piling up on the connection pool.
+     * WebSocket and SockJS transport requests are long-lived and are not counted.
+     */
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> requestConcurrencyLimitFilter() {
+        Semaphore permits = new Semaphore(requestConcurrencyLimit, true);
+
+        OncePerRequestFilter filter = new OncePerRequestFilter() {
+            @Override
+            protected boolean shouldNotFilter(HttpServletRequest request) {
+                return request.getRequestURI().startsWith(request.getContextPath() + "/ws/");
+            }
+
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain filterChain) throws ServletException, IOException {
+                boolean acquired;
+                try {
+                    acquired = permits.tryAcquire(requestPermitTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    acquired = false;
+                }
+
+                if (!acquired) {
+                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server is busy, please retry");
+                    return;
+                }
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    permits.release();
+                }
+            }
+        };
+
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    private SimpleAsyncTaskExecutor createVirtualExecutor(String threadNamePrefix, int concurrencyLimit) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(concurrencyLimit);
+        return executor;
+    }
+}
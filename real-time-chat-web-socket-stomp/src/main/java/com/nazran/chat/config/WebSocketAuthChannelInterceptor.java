@@ -0,0 +1,101 @@
+package com.nazran.chat.config;
+
+import com.google.firebase.auth.FirebaseAuthException;
+import com.nazran.chat.entity.Role;
+import com.nazran.chat.entity.User;
+import com.nazran.chat.repository.UserRepository;
+import com.nazran.chat.security.ChatUserPrincipal;
+import com.nazran.chat.security.VerifiedTokenCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Authenticates STOMP sessions on the CONNECT frame.
+ * <p>
+ * The Firebase ID token from the {@code Authorization} native header is verified once,
+ * the chat user is resolved once and the result is bound to the session as a
+ * {@link ChatUserPrincipal}. Every later frame of the session carries that principal,
+ * so message handlers never resolve Firebase UIDs themselves.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final UserRepository userRepository;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String token = extractToken(accessor);
+        if (token == null) {
+            log.warn("STOMP CONNECT without bearer token (Session: {})", accessor.getSessionId());
+            throw new BadCredentialsException("Missing bearer token");
+        }
+
+        ChatUserPrincipal principal = authenticate(token);
+        accessor.setUser(principal);
+
+        Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+        if (sessionAttributes != null) {
+            sessionAttributes.put(ChatUserPrincipal.USER_ID_ATTRIBUTE, principal.getUserId());
+            sessionAttributes.put(ChatUserPrincipal.PRINCIPAL_ATTRIBUTE, principal);
+        }
+
+        log.info("STOMP session {} authenticated for user ID: {}", accessor.getSessionId(), principal.getUserId());
+        return message;
+    }
+
+    private String extractToken(StompHeaderAccessor accessor) {
+        String authHeader = accessor.getFirstNativeHeader(AUTHORIZATION_HEADER);
+        if (authHeader == null || !authHeader.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+        return authHeader.substring(BEARER_PREFIX.length());
+    }
+
+    private ChatUserPrincipal authenticate(String token) {
+        String firebaseUserId;
+        try {
+            firebaseUserId = verifiedTokenCache.verify(token);
+        } catch (FirebaseAuthException e) {
+            log.error("STOMP token verification failed: {}", e.getMessage());
+            throw new BadCredentialsException("Invalid token", e);
+        }
+
+        User user = userRepository.findWithRolesByFirebaseUserId(firebaseUserId)
+                .orElseThrow(() -> new BadCredentialsException("User does not exist for this Firebase User Id"));
+
+        Set<String> roles = user.getRoles().stream()
+                .map(Role::getName)
+                .collect(Collectors.toSet());
+
+        return new ChatUserPrincipal(
+                user.getId(),
+                user.getFirebaseUserId(),
+                user.getFirstName() + " " + user.getLastName(),
+                roles
+        );
+    }
+}
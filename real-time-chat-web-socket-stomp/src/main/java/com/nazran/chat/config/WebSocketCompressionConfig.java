@@ -0,0 +1,104 @@
+package com.nazran.chat.config;
+
+import com.nazran.chat.realtime.WebSocketCompressionRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Governs permessage-deflate on the chat WebSocket transport.
+ * <p>
+ * Tomcat negotiates permessage-deflate whenever a client offers it. The offer is removed from
+ * the handshake before it reaches the container when compression is disabled or the memory
+ * budget of {@link WebSocketCompressionRegistry} is used up, so the session falls back to
+ * uncompressed frames instead of being rejected.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebSocketCompressionConfig {
+
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+    private static final String UPGRADE_HEADER = "Upgrade";
+
+    private final WebSocketCompressionRegistry webSocketCompressionRegistry;
+
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> webSocketCompressionFilter() {
+        OncePerRequestFilter filter = new OncePerRequestFilter() {
+            @Override
+            protected boolean shouldNotFilter(HttpServletRequest request) {
+                return !"websocket".equalsIgnoreCase(request.getHeader(UPGRADE_HEADER));
+            }
+
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain filterChain) throws ServletException, IOException {
+                List<String> offers = Collections.list(request.getHeaders(EXTENSIONS_HEADER));
+                if (offers.stream().noneMatch(WebSocketCompressionConfig::offersDeflate)
+                        || webSocketCompressionRegistry.admit()) {
+                    filterChain.doFilter(request, response);
+                    return;
+                }
+                filterChain.doFilter(withoutDeflateOffer(request, offers), response);
+            }
+        };
+
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/ws/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    private static boolean offersDeflate(String header) {
+        return Arrays.stream(header.split(",")).anyMatch(WebSocketCompressionConfig::isDeflate);
+    }
+
+    private static boolean isDeflate(String extension) {
+        int paramsStart = extension.indexOf(';');
+        String name = paramsStart < 0 ? extension : extension.substring(0, paramsStart);
+        return WebSocketCompressionRegistry.PERMESSAGE_DEFLATE.equalsIgnoreCase(name.trim());
+    }
+
+    private static HttpServletRequest withoutDeflateOffer(HttpServletRequest request, List<String> offers) {
+        List<String> remaining = offers.stream()
+                .map(header -> Arrays.stream(header.split(","))
+                        .filter(extension -> !isDeflate(extension))
+                        .map(String::trim)
+                        .collect(Collectors.joining(", ")))
+                .filter(header -> !header.isEmpty())
+                .toList();
+
+        return new HttpServletRequestWrapper(request) {
+            @Override
+            public String getHeader(String name) {
+                if (EXTENSIONS_HEADER.equalsIgnoreCase(name)) {
+                    return remaining.isEmpty() ? null : remaining.get(0);
+                }
+                return super.getHeader(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaders(String name) {
+                if (EXTENSIONS_HEADER.equalsIgnoreCase(name)) {
+                    return Collections.enumeration(remaining);
+                }
+                return super.getHeaders(name);
+            }
+        };
+    }
+}
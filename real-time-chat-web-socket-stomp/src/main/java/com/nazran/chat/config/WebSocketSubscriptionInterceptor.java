@@ -1,5 +1,6 @@
 package com.nazran.chat.config;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
@@ -14,16 +15,20 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 
 /**
  * Interceptor for WebSocket subscriptions.
- * Logs and validates subscription attempts.
+ * Authenticates the session on CONNECT, then logs and validates subscription attempts.
  */
 @Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketSubscriptionInterceptor implements WebSocketMessageBrokerConfigurer {
 
+    private final WebSocketAuthChannelInterceptor webSocketAuthChannelInterceptor;
+
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(new ChannelInterceptor() {
+        // Authentication must run first so later interceptors and handlers see the session principal
+        registration.interceptors(webSocketAuthChannelInterceptor, new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
                 StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
@@ -6,6 +6,9 @@ import com.nazran.chat.dto.request.MarkAsReadRequest;
 import com.nazran.chat.dto.request.SendMessageRequest;
 import com.nazran.chat.dto.response.ChatStatsResponse;
 import com.nazran.chat.dto.response.ConversationResponse;
+import com.nazran.chat.dto.response.ConversationSearchResponse;
+import com.nazran.chat.dto.response.MessageAttachmentResponse;
+import com.nazran.chat.dto.response.MessageHistoryResponse;
 import com.nazran.chat.dto.response.MessageResponse;
 import com.nazran.chat.dto.response.UnreadCountResponse;
 import com.nazran.chat.entity.User;
@@ -221,6 +224,60 @@ public class ChatController {
         return ok(success(messages, "Messages fetched successfully").getJson());
     }
 
+    /**
+     * Get messages in a conversation using cursor pagination.
+     *
+     * @param conversationId the conversation ID
+     * @param before         return messages older than this message ID
+     * @param after          return messages newer than this message ID
+     * @param limit          maximum number of messages
+     * @param firebaseUserId the authenticated user's Firebase UID
+     * @return slice of messages with cursors
+     */
+    @Operation(summary = "Get message history", description = "Get messages in a conversation using before/after message cursors")
+    @GetMapping("/conversations/{conversationId}/messages/history")
+    public ResponseEntity<JSONObject> getConversationMessageHistory(
+            @PathVariable Integer conversationId,
+            @RequestParam(required = false) Integer before,
+            @RequestParam(required = false) Integer after,
+            @RequestParam(defaultValue = "50") int limit,
+            @AuthenticationPrincipal String firebaseUserId) {
+
+        log.info("Fetching message history for conversation {} by user: {}", conversationId, firebaseUserId);
+
+        Integer userId = getUserIdFromPrincipal(firebaseUserId);
+        MessageHistoryResponse history = chatService.getConversationMessageHistory(
+                conversationId, userId, before, after, limit);
+
+        return ok(success(history, "Messages fetched successfully").getJson());
+    }
+
+    /**
+     * Get attachments in a conversation.
+     *
+     * @param conversationId the conversation ID
+     * @param page           page number
+     * @param size           page size
+     * @param firebaseUserId the authenticated user's Firebase UID
+     * @return paginated attachments, newest first
+     */
+    @Operation(summary = "Get attachments", description = "Get attachments in a conversation")
+    @GetMapping("/conversations/{conversationId}/attachments")
+    public ResponseEntity<JSONObject> getConversationAttachments(
+            @PathVariable Integer conversationId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal String firebaseUserId) {
+
+        log.info("Fetching attachments for conversation {} by user: {}", conversationId, firebaseUserId);
+
+        Integer userId = getUserIdFromPrincipal(firebaseUserId);
+        Pageable pageable = PageRequest.of(page, size);
+        Page<MessageAttachmentResponse> attachments = messageService.getConversationAttachments(conversationId, userId, pageable);
+
+        return ok(success(attachments, "Attachments fetched successfully").getJson());
+    }
+
     /**
      * Mark messages as read.
      *
@@ -245,12 +302,14 @@ public class ChatController {
 
     /**
      * Send message with file attachment.
+     * The message is returned as PENDING; it is broadcast once the upload has finished,
+     * or reported as FAILED on /user/queue/message-status.
      *
      * @param conversationId the conversation ID
      * @param file           the file to upload
      * @param caption        optional caption
      * @param firebaseUserId the authenticated user's Firebase UID
-     * @return message with attachment
+     * @return pending message with attachment
      */
     @Operation(summary = "Send attachment", description = "Send message with file attachment")
     @PostMapping("/messages/attachment")
@@ -266,7 +325,7 @@ public class ChatController {
         Integer userId = getUserIdFromPrincipal(firebaseUserId);
         MessageResponse response = messageService.sendMessageWithAttachment(conversationId, file, caption, userId);
 
-        return ok(success(response, "Message with attachment sent successfully").getJson());
+        return ok(success(response, "Message with attachment accepted").getJson());
     }
 
     /**
@@ -329,29 +388,31 @@ public class ChatController {
     }
 
     /**
-     * Search conversations.
+     * Search conversations using keyset pagination.
      *
      * @param searchTerm     the search term
-     * @param page           page number
-     * @param size           page size
+     * @param cursorRank     rank cursor of the previous slice
+     * @param cursorId       conversation ID cursor of the previous slice
+     * @param limit          maximum number of conversations
      * @param firebaseUserId the authenticated user's Firebase UID
-     * @return paginated search results
+     * @return ranked slice of matching conversations with the next cursor
      */
-    @Operation(summary = "Search conversations", description = "Search conversations by content or participant name")
+    @Operation(summary = "Search conversations", description = "Search conversations by content or participant name, best match first")
     @GetMapping("/conversations/search")
     public ResponseEntity<JSONObject> searchConversations(
             @RequestParam String searchTerm,
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Float cursorRank,
+            @RequestParam(required = false) Integer cursorId,
+            @RequestParam(defaultValue = "20") int limit,
             @AuthenticationPrincipal String firebaseUserId) {
 
         log.info("Searching conversations with term: {} for user: {}", searchTerm, firebaseUserId);
 
         Integer userId = getUserIdFromPrincipal(firebaseUserId);
-        Pageable pageable = PageRequest.of(page, size);
-        Page<ConversationResponse> conversations = chatService.searchConversations(userId, searchTerm, pageable);
+        ConversationSearchResponse results = chatService.searchConversations(
+                userId, searchTerm, cursorRank, cursorId, limit);
 
-        return ok(success(conversations, "Search completed successfully").getJson());
+        return ok(success(results, "Search completed successfully").getJson());
     }
 
     /**
@@ -1,23 +1,23 @@
 package com.nazran.chat.controller;
 
 import com.nazran.chat.dto.request.MarkAsReadRequest;
+import com.nazran.chat.dto.request.ResyncRequest;
 import com.nazran.chat.dto.request.SendMessageRequest;
 import com.nazran.chat.dto.request.TypingIndicatorRequest;
 import com.nazran.chat.dto.response.MessageResponse;
-import com.nazran.chat.dto.websocket.ReadReceiptDto;
-import com.nazran.chat.dto.websocket.TypingIndicatorDto;
-import com.nazran.chat.entity.User;
-import com.nazran.chat.exception.CustomMessagePresentException;
-import com.nazran.chat.repository.UserRepository;
+import com.nazran.chat.dto.response.ResyncResponse;
+import com.nazran.chat.realtime.TypingIndicatorEngine;
+import com.nazran.chat.security.ChatUserPrincipal;
 import com.nazran.chat.service.ChatService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -28,7 +28,8 @@ import java.time.format.DateTimeFormatter;
 /**
  * WebSocket controller for handling real-time chat messages.
  * Uses STOMP protocol over WebSocket.
- * Updated to use path variables instead of @AuthenticationPrincipal
+ * The sender is taken from the session principal bound at CONNECT; the legacy
+ * {@code {firebaseUserId}} destination suffix is still accepted but ignored.
  */
 @Slf4j
 @RestController
@@ -38,51 +39,45 @@ public class ChatWebSocketController {
 
     private final ChatService chatService;
     private final SimpMessagingTemplate messagingTemplate;
-    private final UserRepository userRepository;
+    private final TypingIndicatorEngine typingIndicatorEngine;
 
     /**
      * Handle incoming chat messages from clients.
-     * Message is sent to /app/chat/send/{firebaseUserId} and broadcasted to conversation subscribers.
+     * Message is sent to /app/chat/send and broadcasted to conversation subscribers
+     * by the post-commit message fanout.
      *
-     * URL: /app/chat/send/{firebaseUserId}
+     * URL: /app/chat/send
      *
-     * @param firebaseUserId the Firebase user ID from path
-     * @param request        the message request
+     * @param principal the authenticated session user
+     * @param request   the message request
      */
-    @MessageMapping("/chat/send/{firebaseUserId}")
+    @MessageMapping({"/chat/send", "/chat/send/{firebaseUserId}"})
     @Operation(
             summary = "Send a chat message",
             description = "Sends a message to a conversation and broadcasts it to all participants subscribed to the conversation topic."
     )
     public void handleSendMessage(
-            @DestinationVariable String firebaseUserId,
+            ChatUserPrincipal principal,
             @Parameter(description = "Message request containing conversation ID, content, and optional metadata")
             @Payload SendMessageRequest request) {
 
         log.info("Received message from user: {} for conversation: {}",
-                firebaseUserId, request.getConversationId());
+                principal.getUserId(), request.getConversationId());
 
         try {
-            // Get user ID from Firebase UID
-            Integer userId = getUserIdFromFirebaseUid(firebaseUserId);
+            Integer userId = principal.getUserId();
 
-            // Send message through service
+            // Send message through service; it is broadcast once after commit
             MessageResponse response = chatService.sendMessage(request, userId);
 
-            // Broadcast to conversation subscribers
-            messagingTemplate.convertAndSend(
-                    "/topic/conversation/" + request.getConversationId(),
-                    response
-            );
-
-            log.info("Message sent and broadcasted successfully");
+            log.info("Message {} sent successfully", response.getId());
 
         } catch (Exception e) {
             log.error("Error sending message: {}", e.getMessage(), e);
 
             // Send error back to sender
             messagingTemplate.convertAndSendToUser(
-                    firebaseUserId,
+                    principal.getName(),
                     "/queue/errors",
                     "Failed to send message: " + e.getMessage()
             );
@@ -91,91 +86,65 @@ public class ChatWebSocketController {
 
     /**
      * Handle typing indicator from clients.
-     * Broadcasts typing status to conversation participants.
+     * Typing status is coalesced per conversation and broadcast to participants
+     * at most once per interval.
      *
-     * URL: /app/chat/typing/{firebaseUserId}
+     * URL: /app/chat/typing
      *
-     * @param firebaseUserId the Firebase user ID from path
-     * @param request        the typing indicator request
+     * @param principal the authenticated session user
+     * @param request   the typing indicator request
      */
-    @MessageMapping("/chat/typing/{firebaseUserId}")
+    @MessageMapping({"/chat/typing", "/chat/typing/{firebaseUserId}"})
     @Operation(
             summary = "Send typing indicator",
             description = "Broadcasts typing status to other participants in the conversation. Should be sent when user starts/stops typing."
     )
     public void handleTypingIndicator(
-            @DestinationVariable String firebaseUserId,
+            ChatUserPrincipal principal,
             @Parameter(description = "Typing indicator request with conversation ID and typing status")
             @Payload TypingIndicatorRequest request) {
 
         log.debug("Typing indicator from user: {} in conversation: {}",
-                firebaseUserId, request.getConversationId());
-
-        try {
-            Integer userId = getUserIdFromFirebaseUid(firebaseUserId);
-
-            // Create typing indicator DTO
-            TypingIndicatorDto typingDto = TypingIndicatorDto.builder()
-                    .conversationId(request.getConversationId())
-                    .userId(userId)
-                    .userName(getUserName(userId))
-                    .isTyping(request.getIsTyping())
-                    .build();
-
-            // Broadcast to conversation (exclude sender)
-            messagingTemplate.convertAndSend(
-                    "/topic/conversation/" + request.getConversationId() + "/typing",
-                    typingDto
-            );
-
-        } catch (Exception e) {
-            log.error("Error handling typing indicator: {}", e.getMessage(), e);
-        }
+                principal.getUserId(), request.getConversationId());
+
+        // Typing state is coalesced in memory and published by the typing engine
+        typingIndicatorEngine.update(
+                request.getConversationId(),
+                principal.getUserId(),
+                principal.getName(),
+                principal.getDisplayName(),
+                Boolean.TRUE.equals(request.getIsTyping())
+        );
     }
 
     /**
      * Handle read receipt from clients.
-     * Marks messages as read and broadcasts to conversation participants.
+     * Advances the user's read watermark; the service broadcasts the receipt to conversation participants.
      *
-     * URL: /app/chat/read/{firebaseUserId}
+     * URL: /app/chat/read
      *
-     * @param firebaseUserId the Firebase user ID from path
-     * @param request        the read receipt request
+     * @param principal the authenticated session user
+     * @param request   the read receipt request
      */
-    @MessageMapping("/chat/read/{firebaseUserId}")
+    @MessageMapping({"/chat/read", "/chat/read/{firebaseUserId}"})
     @Operation(
             summary = "Mark messages as read",
             description = "Marks one or more messages as read and broadcasts read receipt to conversation participants."
     )
     public void handleReadReceipt(
-            @DestinationVariable String firebaseUserId,
+            ChatUserPrincipal principal,
             @Parameter(description = "Read receipt request with conversation ID and message ID(s)")
             @Payload MarkAsReadRequest request) {
 
         log.info("Read receipt from user: {} for conversation: {}",
-                firebaseUserId, request.getConversationId());
+                principal.getUserId(), request.getConversationId());
 
         try {
-            Integer userId = getUserIdFromFirebaseUid(firebaseUserId);
+            Integer userId = principal.getUserId();
 
-            // Mark messages as read
+            // Advances the read watermark and broadcasts the read receipt
             chatService.markMessagesAsRead(request, userId);
 
-            // Create read receipt DTO
-            ReadReceiptDto receiptDto = ReadReceiptDto.builder()
-                    .conversationId(request.getConversationId())
-                    .messageId(request.getMessageId())
-                    .userId(userId)
-                    .timestamp(OffsetDateTime.now(ZoneOffset.UTC)
-                            .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
-                    .build();
-
-            // Broadcast to conversation
-            messagingTemplate.convertAndSend(
-                    "/topic/conversation/" + request.getConversationId() + "/read",
-                    receiptDto
-            );
-
             log.info("Messages marked as read and receipt broadcasted");
 
         } catch (Exception e) {
@@ -183,29 +152,80 @@ public class ChatWebSocketController {
         }
     }
 
+    /**
+     * Handle resync requests from reconnecting clients.
+     * Returns the messages, deletions and read receipts missed since the last seen message
+     * of every conversation in one batch on the resync queue of the requesting session only;
+     * the user's other sessions did not miss anything.
+     *
+     * URL: /app/chat/resync
+     *
+     * @param principal the authenticated session user
+     * @param request   the last seen message ID per conversation
+     */
+    @MessageMapping("/chat/resync")
+    @Operation(
+            summary = "Resync after reconnect",
+            description = "Returns missed messages, deletions and read receipts per conversation on /user/queue/resync of the requesting session. Conversations with too large a gap carry a reload hint."
+    )
+    public void handleResync(
+            ChatUserPrincipal principal,
+            @Parameter(description = "Last seen message ID per conversation ID")
+            @Payload ResyncRequest request,
+            SimpMessageHeaderAccessor headerAccessor) {
+
+        log.info("Resync request from user: {}", principal.getUserId());
+
+        // A session ID header makes the user destination resolve to that session alone
+        SimpMessageHeaderAccessor replyHeaders = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        replyHeaders.setSessionId(headerAccessor.getSessionId());
+        replyHeaders.setLeaveMutable(true);
+
+        try {
+            ResyncResponse response = chatService.resync(request, principal.getUserId());
+
+            messagingTemplate.convertAndSendToUser(
+                    principal.getName(),
+                    "/queue/resync",
+                    response,
+                    replyHeaders.getMessageHeaders()
+            );
+
+        } catch (Exception e) {
+            log.error("Error handling resync: {}", e.getMessage(), e);
+
+            messagingTemplate.convertAndSendToUser(
+                    principal.getName(),
+                    "/queue/errors",
+                    "Failed to resync: " + e.getMessage(),
+                    replyHeaders.getMessageHeaders()
+            );
+        }
+    }
+
     /**
      * Handle user joining a conversation.
      * Notifies other participants.
      *
-     * URL: /app/chat/join/{firebaseUserId}
+     * URL: /app/chat/join
      *
-     * @param firebaseUserId the Firebase user ID from path
+     * @param principal      the authenticated session user
      * @param conversationId the conversation ID
      */
-    @MessageMapping("/chat/join/{firebaseUserId}")
+    @MessageMapping({"/chat/join", "/chat/join/{firebaseUserId}"})
     @Operation(
             summary = "Join a conversation",
             description = "Notifies other participants when a user joins a conversation. Should be called when user opens/enters a conversation."
     )
     public void handleJoinConversation(
-            @DestinationVariable String firebaseUserId,
+            ChatUserPrincipal principal,
             @Parameter(description = "The ID of the conversation to join")
             @Payload Integer conversationId) {
 
-        log.info("User {} joining conversation: {}", firebaseUserId, conversationId);
+        log.info("User {} joining conversation: {}", principal.getUserId(), conversationId);
 
         try {
-            Integer userId = getUserIdFromFirebaseUid(firebaseUserId);
+            Integer userId = principal.getUserId();
 
             // Broadcast join event
             messagingTemplate.convertAndSend(
@@ -222,25 +242,25 @@ public class ChatWebSocketController {
      * Handle user leaving a conversation.
      * Notifies other participants.
      *
-     * URL: /app/chat/leave/{firebaseUserId}
+     * URL: /app/chat/leave
      *
-     * @param firebaseUserId the Firebase user ID from path
+     * @param principal      the authenticated session user
      * @param conversationId the conversation ID
      */
-    @MessageMapping("/chat/leave/{firebaseUserId}")
+    @MessageMapping({"/chat/leave", "/chat/leave/{firebaseUserId}"})
     @Operation(
             summary = "Leave a conversation",
             description = "Notifies other participants when a user leaves a conversation. Should be called when user closes/exits a conversation."
     )
     public void handleLeaveConversation(
-            @DestinationVariable String firebaseUserId,
+            ChatUserPrincipal principal,
             @Parameter(description = "The ID of the conversation to leave")
             @Payload Integer conversationId) {
 
-        log.info("User {} leaving conversation: {}", firebaseUserId, conversationId);
+        log.info("User {} leaving conversation: {}", principal.getUserId(), conversationId);
 
         try {
-            Integer userId = getUserIdFromFirebaseUid(firebaseUserId);
+            Integer userId = principal.getUserId();
 
             // Broadcast leave event
             messagingTemplate.convertAndSend(
@@ -257,28 +277,6 @@ public class ChatWebSocketController {
     // Helper Methods
     // =====================================================
 
-    /**
-     * Retrieves user by Firebase User ID or throws an exception.
-     *
-     * @param firebaseUserId the Firebase user ID to search for
-     * @return the user ID
-     * @throws CustomMessagePresentException if no user found with the Firebase ID
-     */
-    private Integer getUserIdFromFirebaseUid(String firebaseUserId) {
-        User user = userRepository.findByFirebaseUserId(firebaseUserId)
-                .orElseThrow(() -> new CustomMessagePresentException("User does not exist for this Firebase User Id"));
-        return user.getId();
-    }
-
-    /**
-     * TODO: Implement this method to get user name.
-     */
-    private String getUserName(Integer userId) {
-        // Placeholder - implement actual logic
-        log.warn("TODO: Implement getUserName - returning mock name");
-        return "User " + userId; // Replace with actual implementation
-    }
-
     /**
      * Create a generic event object.
      */
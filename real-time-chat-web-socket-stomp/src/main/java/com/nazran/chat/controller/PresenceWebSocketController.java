@@ -1,15 +1,12 @@
 package com.nazran.chat.controller;
 
-import com.nazran.chat.entity.User;
-import com.nazran.chat.exception.CustomMessagePresentException;
-import com.nazran.chat.repository.UserRepository;
+import com.nazran.chat.security.ChatUserPrincipal;
 import com.nazran.chat.service.UserPresenceService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.web.bind.annotation.RestController;
@@ -18,7 +15,8 @@ import java.util.Map;
 
 /**
  * WebSocket controller for handling user presence updates.
- * Updated to use path variables instead of @AuthenticationPrincipal
+ * The user is taken from the session principal bound at CONNECT; the legacy
+ * {@code {firebaseUserId}} destination suffix is still accepted but ignored.
  */
 @Slf4j
 @RestController
@@ -27,31 +25,30 @@ import java.util.Map;
 public class PresenceWebSocketController {
 
     private final UserPresenceService userPresenceService;
-    private final UserRepository userRepository;
 
     /**
      * Handle user presence update (heartbeat).
      * Client should send this periodically to maintain online status.
      *
-     * URL: /app/presence/heartbeat/{firebaseUserId}
+     * URL: /app/presence/heartbeat
      *
-     * @param firebaseUserId the Firebase user ID from path
-     * @param payload        the presence data
+     * @param principal the authenticated session user
+     * @param payload   the presence data
      */
-    @MessageMapping("/presence/heartbeat/{firebaseUserId}")
+    @MessageMapping({"/presence/heartbeat", "/presence/heartbeat/{firebaseUserId}"})
     @Operation(
             summary = "Send presence heartbeat",
             description = "Client sends periodic heartbeat to maintain online status. Should be sent every 30-60 seconds."
     )
     public void handlePresenceHeartbeat(
-            @DestinationVariable String firebaseUserId,
+            ChatUserPrincipal principal,
             @Parameter(description = "Presence data including device information")
             @Payload Map<String, Object> payload) {
 
-        log.debug("Presence heartbeat from user: {}", firebaseUserId);
+        log.debug("Presence heartbeat from user: {}", principal.getUserId());
 
         try {
-            Integer userId = getUserIdFromFirebaseUid(firebaseUserId);
+            Integer userId = principal.getUserId();
 
             String deviceInfo = (String) payload.getOrDefault("deviceInfo", "unknown");
 
@@ -66,25 +63,25 @@ public class PresenceWebSocketController {
     /**
      * Handle user going online explicitly.
      *
-     * URL: /app/presence/online/{firebaseUserId}
+     * URL: /app/presence/online
      *
-     * @param firebaseUserId the Firebase user ID from path
-     * @param payload        the presence data
+     * @param principal the authenticated session user
+     * @param payload   the presence data
      */
-    @MessageMapping("/presence/online/{firebaseUserId}")
+    @MessageMapping({"/presence/online", "/presence/online/{firebaseUserId}"})
     @Operation(
             summary = "Mark user as online",
             description = "Explicitly marks the user as online when they connect or become active."
     )
     public void handleUserOnline(
-            @DestinationVariable String firebaseUserId,
+            ChatUserPrincipal principal,
             @Parameter(description = "Presence data including device information")
             @Payload Map<String, Object> payload) {
 
-        log.info("User going online: {}", firebaseUserId);
+        log.info("User going online: {}", principal.getUserId());
 
         try {
-            Integer userId = getUserIdFromFirebaseUid(firebaseUserId);
+            Integer userId = principal.getUserId();
 
             String deviceInfo = (String) payload.getOrDefault("deviceInfo", "web");
 
@@ -98,21 +95,21 @@ public class PresenceWebSocketController {
     /**
      * Handle user going offline explicitly.
      *
-     * URL: /app/presence/offline/{firebaseUserId}
+     * URL: /app/presence/offline
      *
-     * @param firebaseUserId the Firebase user ID from path
+     * @param principal the authenticated session user
      */
-    @MessageMapping("/presence/offline/{firebaseUserId}")
+    @MessageMapping({"/presence/offline", "/presence/offline/{firebaseUserId}"})
     @Operation(
             summary = "Mark user as offline",
             description = "Explicitly marks the user as offline when they disconnect or become inactive."
     )
-    public void handleUserOffline(@DestinationVariable String firebaseUserId) {
+    public void handleUserOffline(ChatUserPrincipal principal) {
 
-        log.info("User going offline: {}", firebaseUserId);
+        log.info("User going offline: {}", principal.getUserId());
 
         try {
-            Integer userId = getUserIdFromFirebaseUid(firebaseUserId);
+            Integer userId = principal.getUserId();
 
             userPresenceService.markUserOffline(userId);
 
@@ -120,21 +117,4 @@ public class PresenceWebSocketController {
             log.error("Error handling user offline: {}", e.getMessage(), e);
         }
     }
-
-    // =====================================================
-    // Helper Methods
-    // =====================================================
-
-    /**
-     * Retrieves user by Firebase User ID or throws an exception.
-     *
-     * @param firebaseUserId the Firebase user ID to search for
-     * @return the user ID
-     * @throws CustomMessagePresentException if no user found with the Firebase ID
-     */
-    private Integer getUserIdFromFirebaseUid(String firebaseUserId) {
-        User user = userRepository.findByFirebaseUserId(firebaseUserId)
-                .orElseThrow(() -> new CustomMessagePresentException("User does not exist for this Firebase User Id"));
-        return user.getId();
-    }
-}
\ No newline at end of file
+}
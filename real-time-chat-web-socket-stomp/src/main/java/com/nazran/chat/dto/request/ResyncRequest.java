@@ -0,0 +1,21 @@
+package com.nazran.chat.dto.request;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Sent by a client after reconnecting: the last message it has seen, per conversation.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResyncRequest {
+    @NotNull(message = "Last seen message IDs are required")
+    private Map<Integer, Integer> lastSeenMessageIds; // conversation ID -> last seen message ID
+}
@@ -0,0 +1,27 @@
+package com.nazran.chat.dto.response;
+
+import com.nazran.chat.dto.websocket.ReadReceiptDto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Changes to one conversation since the last message seen by the client.
+ * Messages are ordered oldest first. When {@code reload} is set the gap could not be
+ * served within the resync cap (or the last seen message is unknown) and the client
+ * should reload the conversation through the history endpoint instead.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationResyncResponse {
+    private Integer conversationId;
+    private List<MessageResponse> messages;
+    private List<Integer> deletedMessageIds;
+    private List<ReadReceiptDto> readReceipts;
+    private Boolean reload;
+}
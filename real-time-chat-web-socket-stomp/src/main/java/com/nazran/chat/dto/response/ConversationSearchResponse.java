@@ -0,0 +1,23 @@
+package com.nazran.chat.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Keyset-paginated slice of conversation search results, best match first.
+ * The next slice is requested by passing {@code cursorRank} and {@code cursorId} back.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSearchResponse {
+    private List<ConversationResponse> conversations;
+    private Float cursorRank;
+    private Integer cursorId;
+    private Boolean hasMore;
+}
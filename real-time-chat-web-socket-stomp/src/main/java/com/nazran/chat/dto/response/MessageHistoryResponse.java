@@ -0,0 +1,25 @@
+package com.nazran.chat.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Cursor-paginated slice of a conversation's message history.
+ * Messages are ordered newest first; the cursors are message IDs to pass
+ * as {@code before} (older page) or {@code after} (newer page).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageHistoryResponse {
+    private Integer conversationId;
+    private List<MessageResponse> messages;
+    private Integer beforeCursor;
+    private Integer afterCursor;
+    private Boolean hasMore;
+}
@@ -1,5 +1,6 @@
 package com.nazran.chat.dto.response;
 
+import com.nazran.chat.enums.MessageStatus;
 import com.nazran.chat.enums.MessageType;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -21,6 +22,7 @@ public class MessageResponse {
     private String senderRole;
     private String content;
     private MessageType messageType;
+    private MessageStatus status;
     private Boolean isRead;
     private OffsetDateTime readAt;
     private List<MessageAttachmentResponse> attachments;
@@ -0,0 +1,19 @@
+package com.nazran.chat.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Batch of missed changes returned to a reconnecting client on {@code /user/queue/resync}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResyncResponse {
+    private List<ConversationResyncResponse> conversations;
+}
@@ -49,6 +49,16 @@ public class Conversation extends BaseEntityWithUpdate {
     @Column(name = "last_message_at")
     private OffsetDateTime lastMessageAt;
 
+    /**
+     * The latest message of this conversation, maintained on send and delete.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "last_message_id")
+    private Message lastMessage;
+
+    @Column(name = "last_message_preview", length = 255)
+    private String lastMessagePreview;
+
     /**
      * One-to-many relationship with messages in this conversation.
      */
@@ -6,10 +6,12 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.io.Serial;
+import java.time.OffsetDateTime;
 
 /**
  * Caches unread message counts for conversations per user.
  * Optimizes performance by avoiding real-time counting queries.
+ * Also holds the user's read watermark, from which read state is derived.
  */
 @Getter
 @Setter
@@ -44,4 +46,13 @@ public class ConversationUnreadCount extends BaseEntityWithUpdate {
 
     @Column(name = "unread_count", nullable = false)
     private Integer unreadCount = 0;
+
+    /**
+     * Read watermark: every message of the conversation up to this ID has been read by the user.
+     */
+    @Column(name = "last_read_message_id")
+    private Integer lastReadMessageId;
+
+    @Column(name = "last_read_at")
+    private OffsetDateTime lastReadAt;
 }
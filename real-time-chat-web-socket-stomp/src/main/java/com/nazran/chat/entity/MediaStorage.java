@@ -18,10 +18,11 @@ import org.hibernate.annotations.DynamicUpdate;
 public class MediaStorage extends BaseEntityWithUpdate {
 
     /**
-     * The message this attachment belongs to.
+     * The message this attachment belongs to, resolved through the reference ID.
+     * Read-only; the reference is written through {@link #referenceId}.
      */
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "message_id", nullable = false)
+    @JoinColumn(name = "reference_id", insertable = false, updatable = false)
     private Message message;
 
     @Column(name = "owner_id")
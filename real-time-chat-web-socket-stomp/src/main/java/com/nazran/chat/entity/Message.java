@@ -1,5 +1,6 @@
 package com.nazran.chat.entity;
 
+import com.nazran.chat.enums.MessageStatus;
 import com.nazran.chat.enums.MessageType;
 import jakarta.persistence.*;
 import lombok.Getter;
@@ -12,21 +13,30 @@ import java.io.Serial;
 import java.time.OffsetDateTime;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Represents a message in a conversation.
  * Stores message content, type, and read status.
+ * The table is range partitioned by month on {@code created_at}; IDs remain unique
+ * through the shared sequence, so the entity keeps {@code id} as its identifier.
  */
 @Getter
 @Setter
 @Entity
 @NoArgsConstructor
 @Table(schema = "chat", name = "messages")
-public class Message extends BaseEntityWithUpdate {
+public class Message extends BaseEntityWithUpdateAndDelete {
 
     @Serial
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Content of a soft deleted message; deleted messages are also turned into SYSTEM messages
+     * and carry their deletion time in {@code deleted_at}.
+     */
+    public static final String DELETED_CONTENT = "[Message deleted]";
+
     /**
      * The conversation this message belongs to.
      */
@@ -49,6 +59,31 @@ public class Message extends BaseEntityWithUpdate {
     @Column(name = "message_type", nullable = false, length = 20)
     private MessageType messageType = MessageType.TEXT;
 
+    /**
+     * Delivery status; messages with an attachment stay PENDING until the upload finished.
+     */
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.NAMED_ENUM)
+    @Column(name = "status", nullable = false, length = 20)
+    private MessageStatus status = MessageStatus.SENT;
+
+    /**
+     * Instance uploading the attachment of a PENDING message.
+     */
+    @Column(name = "upload_instance_id", length = 64)
+    private String uploadInstanceId;
+
+    /**
+     * Run of the instance uploading the attachment of a PENDING message; a message left
+     * PENDING by an earlier run of the same instance lost its upload with that run.
+     */
+    @Column(name = "upload_run_id")
+    private UUID uploadRunId;
+
+    /**
+     * Legacy per-message read flag. Read state is derived from the read watermarks in
+     * {@link ConversationUnreadCount}; the column is no longer maintained.
+     */
     @Column(name = "is_read", nullable = false)
     private Boolean isRead = false;
 
@@ -60,4 +95,11 @@ public class Message extends BaseEntityWithUpdate {
      */
     @OneToMany(mappedBy = "message", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     private Set<MediaStorage> attachments = new HashSet<>();
+
+    /**
+     * Returns whether the message was soft deleted by its sender.
+     */
+    public boolean isDeleted() {
+        return getDeletedAt() != null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.nazran.chat.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum MessageStatus {
+    PENDING("PENDING"),
+    SENT("SENT"),
+    FAILED("FAILED");
+
+    private final String label;
+
+    MessageStatus(String label) {
+        this.label = label;
+    }
+}
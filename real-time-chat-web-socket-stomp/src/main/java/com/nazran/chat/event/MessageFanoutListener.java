@@ -0,0 +1,39 @@
+package com.nazran.chat.event;
+
+import com.nazran.chat.realtime.OutboundPayloadCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Fans out sent messages to conversation subscribers.
+ * <p>
+ * Runs after the sending transaction has committed, so rolled-back messages are never
+ * broadcast. The connection is only released after this callback returns, so the
+ * listener does no database work and hands the frame to the broker without blocking.
+ * The payload is serialized once; the broker reuses the same bytes for every subscriber.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageFanoutListener {
+
+    private final OutboundPayloadCache outboundPayloadCache;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMessageSent(MessageSentEvent event) {
+        String destination = "/topic/conversation/" + event.getConversationId();
+
+        try {
+            outboundPayloadCache.send(destination, outboundPayloadCache.encode(event.getMessage()));
+        } catch (MessageConversionException e) {
+            log.error("Failed to serialize message {} for fanout: {}", event.getMessage().getId(), e.getMessage(), e);
+            return;
+        }
+
+        log.debug("Message {} fanned out to {}", event.getMessage().getId(), destination);
+    }
+}
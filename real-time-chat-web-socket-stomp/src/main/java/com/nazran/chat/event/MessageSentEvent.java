@@ -0,0 +1,21 @@
+package com.nazran.chat.event;
+
+import com.nazran.chat.dto.response.MessageResponse;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * Published when a message has been persisted in a conversation.
+ * Delivered to subscribers by {@link MessageFanoutListener} and counted as unread for
+ * its recipients by {@link UnreadCountListener} once the transaction commits.
+ */
+@Getter
+@RequiredArgsConstructor
+public class MessageSentEvent {
+
+    private final Integer conversationId;
+    private final MessageResponse message;
+    private final Set<Integer> recipientIds;
+}
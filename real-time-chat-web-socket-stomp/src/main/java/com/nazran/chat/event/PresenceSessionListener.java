@@ -0,0 +1,75 @@
+package com.nazran.chat.event;
+
+import com.nazran.chat.security.ChatUserPrincipal;
+import com.nazran.chat.service.UserPresenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps presence in line with the lifecycle of STOMP sessions.
+ * <p>
+ * A user is online as soon as one session is connected and goes offline when the last
+ * of their sessions disconnects, so closing one of several tabs does not flip the status.
+ * Disconnect events may be delivered more than once per session; tracking session IDs
+ * rather than a counter keeps the handling idempotent.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PresenceSessionListener {
+
+    private final UserPresenceService userPresenceService;
+
+    private final ConcurrentMap<Integer, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        ChatUserPrincipal principal = toChatPrincipal(event.getUser());
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (principal == null || sessionId == null) {
+            return;
+        }
+
+        // Add inside compute so a concurrent last-session disconnect cannot drop the set in between
+        sessionsByUser.compute(principal.getUserId(), (id, sessions) -> {
+            Set<String> updated = sessions != null ? sessions : ConcurrentHashMap.newKeySet();
+            updated.add(sessionId);
+            return updated;
+        });
+        userPresenceService.updateUserPresence(principal.getUserId(), true, null);
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        ChatUserPrincipal principal = toChatPrincipal(event.getUser());
+        if (principal == null) {
+            return;
+        }
+
+        Integer userId = principal.getUserId();
+        boolean lastSession = sessionsByUser.computeIfPresent(userId, (id, sessions) -> {
+            sessions.remove(event.getSessionId());
+            return sessions.isEmpty() ? null : sessions;
+        }) == null;
+
+        if (lastSession) {
+            log.debug("Last STOMP session {} of user ID: {} closed ({})",
+                    event.getSessionId(), userId, event.getCloseStatus());
+            userPresenceService.markUserOffline(userId);
+        }
+    }
+
+    private ChatUserPrincipal toChatPrincipal(Principal user) {
+        return user instanceof ChatUserPrincipal chatUserPrincipal ? chatUserPrincipal : null;
+    }
+}
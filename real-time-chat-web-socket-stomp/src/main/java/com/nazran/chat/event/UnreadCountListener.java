@@ -0,0 +1,24 @@
+package com.nazran.chat.event;
+
+import com.nazran.chat.realtime.UnreadCountRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Counts sent messages as unread for their recipients.
+ * <p>
+ * Runs after the sending transaction has committed, so rolled-back messages are never counted.
+ */
+@Component
+@RequiredArgsConstructor
+public class UnreadCountListener {
+
+    private final UnreadCountRegistry unreadCountRegistry;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMessageSent(MessageSentEvent event) {
+        unreadCountRegistry.increment(event.getConversationId(), event.getRecipientIds());
+    }
+}
@@ -0,0 +1,63 @@
+package com.nazran.chat.maintenance;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maintains the monthly partitions of {@code chat.messages}.
+ * <p>
+ * On startup and once a day, partitions are created for the current month and the
+ * configured number of months ahead, so inserts never hit a missing partition. When
+ * archiving is enabled, partitions older than the retention window are detached into
+ * the {@code chat_archive} schema. Both steps run in database functions guarded by an
+ * advisory lock, so several instances may run the job concurrently.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessagePartitionMaintenance {
+
+    private static final String CREATE_PARTITIONS_SQL =
+            "SELECT chat.create_message_partitions(CURRENT_DATE, (CURRENT_DATE + make_interval(months => ?))::DATE)";
+
+    private static final String ARCHIVE_PARTITIONS_SQL =
+            "SELECT chat.archive_message_partitions((date_trunc('month', CURRENT_DATE) - make_interval(months => ?))::DATE)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${chat.messages.partitions-ahead:3}")
+    private int partitionsAhead;
+
+    @Value("${chat.messages.archive.enabled:false}")
+    private boolean archiveEnabled;
+
+    @Value("${chat.messages.archive.retention-months:12}")
+    private int retentionMonths;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${chat.messages.partition-maintenance-cron:0 15 3 * * *}", zone = "UTC")
+    public void maintain() {
+        try {
+            Integer created = jdbcTemplate.queryForObject(CREATE_PARTITIONS_SQL, Integer.class, partitionsAhead);
+            if (created != null && created > 0) {
+                log.info("Created {} message partitions", created);
+            }
+
+            if (archiveEnabled) {
+                Integer archived = jdbcTemplate.queryForObject(ARCHIVE_PARTITIONS_SQL, Integer.class, retentionMonths);
+                if (archived != null && archived > 0) {
+                    log.info("Archived {} message partitions older than {} months", archived, retentionMonths);
+                }
+            }
+        } catch (DataAccessException e) {
+            log.error("Message partition maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.nazran.chat.realtime;
+
+import com.nazran.chat.dto.response.ChatStatsResponse;
+import com.nazran.chat.enums.ConversationStatus;
+import com.nazran.chat.repository.ConversationRepository;
+import com.nazran.chat.repository.MessageRepository;
+import com.nazran.chat.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Incrementally maintained chat statistics.
+ * <p>
+ * Counters are updated when conversations are created, assigned or closed and when
+ * messages are sent, always after the surrounding transaction has committed, so the
+ * statistics endpoint is served from memory. A periodic reconciliation recounts from
+ * the database to correct drift, e.g. from changes made outside the application.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatStatistics {
+
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    private final UserRepository chatUserRepository;
+    private final PresenceRegistry presenceRegistry;
+
+    private final Map<ConversationStatus, AtomicLong> conversationsByStatus = createStatusCounters();
+    private final AtomicLong unassignedConversations = new AtomicLong();
+    private final AtomicLong totalMessages = new AtomicLong();
+
+    private volatile List<Integer> superAdminIds = List.of();
+
+    /**
+     * Records a new, unassigned open conversation.
+     */
+    public void recordConversationCreated() {
+        afterCommit(() -> {
+            conversationsByStatus.get(ConversationStatus.OPEN).incrementAndGet();
+            unassignedConversations.incrementAndGet();
+        });
+    }
+
+    /**
+     * Records a status change of a conversation.
+     *
+     * @param from           the previous status
+     * @param fromUnassigned whether the conversation was open without a super admin before
+     * @param to             the new status
+     * @param toUnassigned   whether the conversation is open without a super admin now
+     */
+    public void recordStatusChange(ConversationStatus from, boolean fromUnassigned,
+                                   ConversationStatus to, boolean toUnassigned) {
+        afterCommit(() -> {
+            conversationsByStatus.get(from).decrementAndGet();
+            conversationsByStatus.get(to).incrementAndGet();
+            if (fromUnassigned != toUnassigned) {
+                unassignedConversations.addAndGet(toUnassigned ? 1 : -1);
+            }
+        });
+    }
+
+    /**
+     * Records persisted messages.
+     *
+     * @param count the number of messages
+     */
+    public void recordMessages(int count) {
+        afterCommit(() -> totalMessages.addAndGet(count));
+    }
+
+    /**
+     * Returns the global statistics; the per-user unread total is filled in by the caller.
+     */
+    public ChatStatsResponse.ChatStatsResponseBuilder snapshot() {
+        long open = conversationsByStatus.get(ConversationStatus.OPEN).get();
+        long assigned = conversationsByStatus.get(ConversationStatus.ASSIGNED).get();
+        long closed = conversationsByStatus.get(ConversationStatus.CLOSED).get();
+
+        long onlineSuperAdmins = 0;
+        for (Integer superAdminId : superAdminIds) {
+            if (presenceRegistry.isOnline(superAdminId)) {
+                onlineSuperAdmins++;
+            }
+        }
+
+        return ChatStatsResponse.builder()
+                .totalConversations(open + assigned + closed)
+                .openConversations(open)
+                .assignedConversations(assigned)
+                .closedConversations(closed)
+                .unassignedConversations(unassignedConversations.get())
+                .totalMessages(totalMessages.get())
+                .onlineUsers((long) presenceRegistry.getOnlineCount())
+                .onlineSuperAdmins(onlineSuperAdmins);
+    }
+
+    /**
+     * Recounts all statistics from the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${chat.stats.reconcile-interval-ms:300000}",
+            fixedDelayString = "${chat.stats.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        for (ConversationStatus status : ConversationStatus.values()) {
+            conversationsByStatus.get(status).set(conversationRepository.countByStatus(status));
+        }
+        unassignedConversations.set(conversationRepository.countUnassignedOpen());
+        totalMessages.set(messageRepository.count());
+        superAdminIds = List.copyOf(chatUserRepository.findActiveSuperAdminIds());
+
+        log.debug("Chat statistics reconciled with the database");
+    }
+
+    private void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+
+    private static Map<ConversationStatus, AtomicLong> createStatusCounters() {
+        Map<ConversationStatus, AtomicLong> counters = new EnumMap<>(ConversationStatus.class);
+        for (ConversationStatus status : ConversationStatus.values()) {
+            counters.put(status, new AtomicLong());
+        }
+        return counters;
+    }
+}
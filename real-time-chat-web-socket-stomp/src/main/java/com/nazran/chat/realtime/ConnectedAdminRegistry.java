@@ -0,0 +1,82 @@
+package com.nazran.chat.realtime;
+
+import com.nazran.chat.security.ChatUserPrincipal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Super admins with at least one connected STOMP session.
+ * <p>
+ * Maintained from session connect and disconnect events using the principal bound at
+ * CONNECT, so admin notifications resolve their recipients without a database query and
+ * in time proportional to the number of connected admins. Session IDs are tracked per
+ * admin so that repeated disconnect events and multiple tabs are handled correctly.
+ */
+@Slf4j
+@Component
+public class ConnectedAdminRegistry {
+
+    private final ConcurrentMap<Integer, ConnectedAdmin> admins = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        ChatUserPrincipal principal = toSuperAdmin(event.getUser());
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (principal == null || sessionId == null) {
+            return;
+        }
+
+        // Add inside compute so a concurrent last-session disconnect cannot drop the entry in between
+        admins.compute(principal.getUserId(), (id, admin) -> {
+            ConnectedAdmin updated = admin != null
+                    ? admin
+                    : new ConnectedAdmin(id, principal.getFirebaseUserId(), ConcurrentHashMap.newKeySet());
+            updated.sessionIds().add(sessionId);
+            return updated;
+        });
+        log.debug("Super admin ID: {} connected (session {})", principal.getUserId(), sessionId);
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        ChatUserPrincipal principal = toSuperAdmin(event.getUser());
+        if (principal == null) {
+            return;
+        }
+
+        admins.computeIfPresent(principal.getUserId(), (id, admin) -> {
+            admin.sessionIds().remove(event.getSessionId());
+            return admin.sessionIds().isEmpty() ? null : admin;
+        });
+    }
+
+    /**
+     * Returns the super admins that are currently connected.
+     *
+     * @return unmodifiable live view of the connected admins
+     */
+    public Collection<ConnectedAdmin> getConnected() {
+        return Collections.unmodifiableCollection(admins.values());
+    }
+
+    private ChatUserPrincipal toSuperAdmin(Principal user) {
+        return user instanceof ChatUserPrincipal principal && principal.isSuperAdmin() ? principal : null;
+    }
+
+    /**
+     * A connected super admin and the IDs of their open sessions.
+     */
+    public record ConnectedAdmin(Integer userId, String firebaseUserId, Set<String> sessionIds) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.nazran.chat.realtime;
+
+import java.util.Arrays;
+
+/**
+ * An outbound payload serialized once by {@link OutboundPayloadCache}.
+ * <p>
+ * The bytes are shared by every message built from this payload and must not be modified.
+ */
+public final class EncodedPayload {
+
+    private final byte[] bytes;
+
+    EncodedPayload(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the bytes of this JSON object with the given {@code "name":value} members
+     * appended before its closing brace.
+     *
+     * @param members serialized members without surrounding braces
+     */
+    byte[] withMembers(byte[] members) {
+        int close = lastNonWhitespace(bytes.length - 1);
+        if (close < 0 || bytes[close] != '}') {
+            throw new IllegalStateException("Overlays can only be applied to JSON objects");
+        }
+        boolean empty = bytes[lastNonWhitespace(close - 1)] == '{';
+
+        byte[] merged = Arrays.copyOf(bytes, close + (empty ? 0 : 1) + members.length + 1);
+        int offset = close;
+        if (!empty) {
+            merged[offset++] = ',';
+        }
+        System.arraycopy(members, 0, merged, offset, members.length);
+        merged[merged.length - 1] = '}';
+        return merged;
+    }
+
+    private int lastNonWhitespace(int from) {
+        int index = from;
+        while (index >= 0 && Character.isWhitespace(bytes[index])) {
+            index--;
+        }
+        return index;
+    }
+}
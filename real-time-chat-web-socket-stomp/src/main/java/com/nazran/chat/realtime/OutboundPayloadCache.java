@@ -0,0 +1,128 @@
+package com.nazran.chat.realtime;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Serializes outbound STOMP payloads once and sends the same bytes to any number of
+ * destinations and user queues.
+ * <p>
+ * {@link SimpMessagingTemplate#convertAndSend} runs Jackson on every call, so a fanout to
+ * N users serializes N times. Here a payload is encoded once per event; fields that differ
+ * per recipient (such as the unread count) are left out of the shared encoding and spliced
+ * in per recipient as a small overlay, without mapping or serializing the whole DTO again.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboundPayloadCache {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Serializes a payload once.
+     *
+     * @param payload       the DTO to serialize
+     * @param overlayFields properties left out of the shared bytes, supplied per recipient
+     *                      through {@link #sendToUser(String, String, EncodedPayload, Map)}
+     * @return the encoded payload
+     */
+    public EncodedPayload encode(Object payload, String... overlayFields) {
+        try {
+            if (overlayFields.length == 0) {
+                return new EncodedPayload(objectMapper.writeValueAsBytes(payload));
+            }
+            ObjectNode tree = objectMapper.valueToTree(payload);
+            tree.remove(Arrays.asList(overlayFields));
+            return new EncodedPayload(objectMapper.writeValueAsBytes(tree));
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new MessageConversionException("Failed to serialize outbound payload: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Joins payloads encoded earlier into a JSON array without serializing them again.
+     *
+     * @param elements the encoded elements
+     * @return the encoded array
+     */
+    public EncodedPayload encodeArray(Collection<EncodedPayload> elements) {
+        ByteArrayOutputStream array = new ByteArrayOutputStream();
+        array.write('[');
+        boolean first = true;
+        for (EncodedPayload element : elements) {
+            if (!first) {
+                array.write(',');
+            }
+            array.writeBytes(element.getBytes());
+            first = false;
+        }
+        array.write(']');
+        return new EncodedPayload(array.toByteArray());
+    }
+
+    /**
+     * Sends an encoded payload to a destination.
+     */
+    public void send(String destination, EncodedPayload payload) {
+        messagingTemplate.send(destination, createMessage(payload.getBytes()));
+    }
+
+    /**
+     * Sends an encoded payload to the sessions of a user.
+     */
+    public void sendToUser(String user, String destination, EncodedPayload payload) {
+        messagingTemplate.send(userDestination(user, destination), createMessage(payload.getBytes()));
+    }
+
+    /**
+     * Sends an encoded payload to the sessions of a user with per-user fields added.
+     *
+     * @param overlay values of the overlay fields for this user
+     */
+    public void sendToUser(String user, String destination, EncodedPayload payload, Map<String, ?> overlay) {
+        if (overlay.isEmpty()) {
+            sendToUser(user, destination, payload);
+            return;
+        }
+        messagingTemplate.send(userDestination(user, destination),
+                createMessage(payload.withMembers(encodeMembers(overlay))));
+    }
+
+    private byte[] encodeMembers(Map<String, ?> overlay) {
+        try {
+            byte[] object = objectMapper.writeValueAsBytes(overlay);
+            // Strip the braces of the serialized map, keeping its "name":value members
+            return Arrays.copyOfRange(object, 1, object.length - 1);
+        } catch (JsonProcessingException e) {
+            throw new MessageConversionException("Failed to serialize payload overlay: " + e.getMessage(), e);
+        }
+    }
+
+    private String userDestination(String user, String destination) {
+        return messagingTemplate.getUserDestinationPrefix() + StringUtils.replace(user, "/", "%2F") +
+                (destination.startsWith("/") ? destination : "/" + destination);
+    }
+
+    private Message<byte[]> createMessage(byte[] body) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,76 @@
+package com.nazran.chat.realtime;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Priority class of an outbound STOMP frame.
+ * <p>
+ * Chat messages, receipts, status and error frames are {@link #HIGH}. Typing, presence and
+ * join/leave events are {@link #LOW}: they may be dropped for a session that falls behind.
+ * Low priority frames are deltas (typing and presence frames carry only the users whose
+ * state changed), so they are never replaced by a later frame for the same destination;
+ * the publishers already coalesce them per user before sending.
+ */
+public enum OutboundPriority {
+
+    HIGH,
+    LOW;
+
+    private static final String MESSAGE_COMMAND = "MESSAGE\n";
+    private static final String DESTINATION_HEADER = "\ndestination:";
+    private static final int MAX_HEADER_SCAN = 512;
+
+    /**
+     * Classifies a destination.
+     *
+     * @param destination the destination, may be null for non-MESSAGE frames
+     */
+    public static OutboundPriority of(String destination) {
+        if (destination == null) {
+            return HIGH;
+        }
+        if (destination.endsWith("/typing") || destination.endsWith("/events")
+                || destination.endsWith("/queue/presence")) {
+            return LOW;
+        }
+        return HIGH;
+    }
+
+    /**
+     * Reads the destination header of an encoded STOMP MESSAGE frame.
+     *
+     * @param message the encoded frame
+     * @return the destination, or null for other frames (CONNECTED, RECEIPT, ERROR, heartbeats)
+     */
+    public static String destinationOf(WebSocketMessage<?> message) {
+        String header;
+        if (message instanceof TextMessage textMessage) {
+            String payload = textMessage.getPayload();
+            header = payload.substring(0, Math.min(payload.length(), MAX_HEADER_SCAN));
+        } else if (message instanceof BinaryMessage binaryMessage) {
+            ByteBuffer payload = binaryMessage.getPayload().duplicate();
+            byte[] bytes = new byte[Math.min(payload.remaining(), MAX_HEADER_SCAN)];
+            payload.get(bytes);
+            header = new String(bytes, StandardCharsets.UTF_8);
+        } else {
+            return null;
+        }
+
+        if (!header.startsWith(MESSAGE_COMMAND)) {
+            return null;
+        }
+        int headersEnd = header.indexOf("\n\n");
+        int start = header.indexOf(DESTINATION_HEADER, MESSAGE_COMMAND.length() - 1);
+        if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+            return null;
+        }
+        start += DESTINATION_HEADER.length();
+        int end = header.indexOf('\n', start);
+        return end < 0 ? null : header.substring(start, end);
+    }
+}
@@ -0,0 +1,218 @@
+package com.nazran.chat.realtime;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.Session;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.NativeWebSocketSession;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Gives every WebSocket session a prioritized outbound queue and enforces its limits.
+ * <p>
+ * Installed as a handler decorator factory on the WebSocket transport, so STOMP frames
+ * for a session pass through its {@link PrioritizedWebSocketSession} before reaching the
+ * socket. Queues are drained on a bounded pool. Each blocking write on a native WebSocket
+ * gives up after {@code chat.ws.outbound.send-timeout-ms}, so a slow socket holds a drain
+ * thread only that long before its session is closed. A periodic sweep disconnects
+ * sessions that stay behind for longer than {@code chat.ws.outbound.max-behind-ms} or
+ * whose write is blocked for longer than {@code chat.ws.outbound.max-write-ms}. It also
+ * resumes drains that the full drain queue rejected. Queue depth is published per lane,
+ * summed over all sessions, as {@code chat.ws.outbound.queue.depth}. The deepest session
+ * is published as {@code chat.ws.outbound.queue.depth.max}.
+ */
+@Slf4j
+@Component
+public class OutboundSessionQueues implements WebSocketHandlerDecoratorFactory {
+
+    /**
+     * User property of Tomcat's WebSocket session that bounds a blocking send.
+     */
+    private static final String BLOCKING_SEND_TIMEOUT_PROPERTY = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private static final String QUEUE_DEPTH_METRIC = "chat.ws.outbound.queue.depth";
+
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolTaskExecutor drainExecutor;
+    private final Counter dropped;
+    private final Counter drainsRejected;
+    private final ConcurrentMap<String, TrackedSession> sessions = new ConcurrentHashMap<>();
+
+    @Getter
+    @Value("${chat.ws.outbound.low-priority-threshold:32}")
+    private int lowPriorityThreshold;
+
+    @Getter
+    @Value("${chat.ws.outbound.max-queued-messages:1000}")
+    private int maxQueuedMessages;
+
+    @Value("${chat.ws.outbound.max-behind-ms:10000}")
+    private long maxBehindMillis;
+
+    @Value("${chat.ws.outbound.max-write-ms:15000}")
+    private long maxWriteMillis;
+
+    @Value("${chat.ws.outbound.send-timeout-ms:2000}")
+    private long sendTimeoutMillis;
+
+    public OutboundSessionQueues(MeterRegistry meterRegistry,
+                                 @Value("${chat.ws.outbound.drain-pool-size:16}") int drainPoolSize,
+                                 @Value("${chat.ws.outbound.drain-queue-capacity:4096}") int drainQueueCapacity) {
+        this.meterRegistry = meterRegistry;
+        this.dropped = Counter.builder("chat.ws.outbound.frames")
+                .tag("result", "dropped")
+                .description("Low priority frames dropped for sessions that fell behind")
+                .register(meterRegistry);
+        this.drainsRejected = Counter.builder("chat.ws.outbound.drains.rejected")
+                .description("Queue drains rejected because the drain pool was saturated; resumed by the sweep")
+                .register(meterRegistry);
+
+        Gauge.builder(QUEUE_DEPTH_METRIC, this, queues -> queues.totalDepth(PrioritizedWebSocketSession::getHighDepth))
+                .tag("lane", "high")
+                .description("Frames queued for all sessions")
+                .register(meterRegistry);
+        Gauge.builder(QUEUE_DEPTH_METRIC, this, queues -> queues.totalDepth(PrioritizedWebSocketSession::getLowDepth))
+                .tag("lane", "low")
+                .description("Frames queued for all sessions")
+                .register(meterRegistry);
+        Gauge.builder(QUEUE_DEPTH_METRIC + ".max", this, OutboundSessionQueues::maxDepth)
+                .description("Frames queued for the session furthest behind")
+                .register(meterRegistry);
+
+        // One drain task per session at most, so the queue only fills when every thread is stuck
+        this.drainExecutor = new ThreadPoolTaskExecutor();
+        this.drainExecutor.setCorePoolSize(drainPoolSize);
+        this.drainExecutor.setMaxPoolSize(drainPoolSize);
+        this.drainExecutor.setQueueCapacity(drainQueueCapacity);
+        this.drainExecutor.setThreadNamePrefix("ws-outbound-drain-");
+        this.drainExecutor.initialize();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(register(session));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                unregister(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${chat.ws.outbound.sweep-interval-ms:1000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        for (TrackedSession tracked : sessions.values()) {
+            PrioritizedWebSocketSession session = tracked.session();
+            if (session.behindForMillis(now) > maxBehindMillis) {
+                session.close("behind");
+            } else if (session.writingForMillis(now) > maxWriteMillis) {
+                session.close("write-timeout");
+            } else {
+                session.resumeDrain();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainExecutor.shutdown();
+    }
+
+    /**
+     * Returns whether the session can receive binary frames, which SockJS transports cannot.
+     *
+     * @param sessionId the WebSocket session ID
+     * @return true for an open native WebSocket session
+     */
+    public boolean isBinaryCapable(String sessionId) {
+        TrackedSession tracked = sessions.get(sessionId);
+        return tracked != null && tracked.binaryCapable();
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    void recordDrainRejected() {
+        drainsRejected.increment();
+    }
+
+    void recordDisconnected(String reason) {
+        Counter.builder("chat.ws.outbound.disconnects")
+                .tag("reason", reason)
+                .description("Sessions closed because they could not keep up with outbound traffic")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private WebSocketSession register(WebSocketSession session) {
+        boundBlockingSend(session);
+        PrioritizedWebSocketSession prioritized = new PrioritizedWebSocketSession(session, this, drainExecutor);
+        sessions.put(session.getId(), new TrackedSession(prioritized, !(session instanceof SockJsSession)));
+        return prioritized;
+    }
+
+    private void unregister(String sessionId) {
+        TrackedSession tracked = sessions.remove(sessionId);
+        if (tracked == null) {
+            return;
+        }
+        tracked.session().clear();
+    }
+
+    /**
+     * Limits how long a write may block on the native WebSocket. This covers raw WebSocket
+     * sessions and the SockJS WebSocket transport. SockJS HTTP transports write to the
+     * response and are bounded by the connector timeouts instead.
+     */
+    private void boundBlockingSend(WebSocketSession session) {
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            Session webSocket = nativeSession.getNativeSession(Session.class);
+            if (webSocket != null) {
+                webSocket.getUserProperties().put(BLOCKING_SEND_TIMEOUT_PROPERTY, sendTimeoutMillis);
+            }
+        }
+    }
+
+    private double totalDepth(ToIntFunction<PrioritizedWebSocketSession> lane) {
+        long total = 0;
+        for (TrackedSession tracked : sessions.values()) {
+            total += lane.applyAsInt(tracked.session());
+        }
+        return total;
+    }
+
+    private double maxDepth() {
+        int max = 0;
+        for (TrackedSession tracked : sessions.values()) {
+            PrioritizedWebSocketSession session = tracked.session();
+            max = Math.max(max, session.getHighDepth() + session.getLowDepth());
+        }
+        return max;
+    }
+
+    private record TrackedSession(PrioritizedWebSocketSession session, boolean binaryCapable) {
+    }
+}
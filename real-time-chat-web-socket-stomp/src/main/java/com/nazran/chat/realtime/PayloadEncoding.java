@@ -0,0 +1,63 @@
+package com.nazran.chat.realtime;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
+
+/**
+ * Binary encodings a STOMP client may opt into instead of JSON.
+ * <p>
+ * Spring only sends STOMP bodies as binary WebSocket frames when their content type is
+ * {@code application/octet-stream}, so frames are labelled
+ * {@code application/octet-stream;format=<name>} and clients read the format parameter.
+ */
+public enum PayloadEncoding {
+
+    CBOR("cbor", MimeType.valueOf("application/cbor"), new CBORFactory()),
+    SMILE("smile", MimeType.valueOf("application/x-jackson-smile"), new SmileFactory());
+
+    private final MimeType mediaType;
+    private final MimeType frameContentType;
+    private final JsonFactory factory;
+
+    PayloadEncoding(String format, MimeType mediaType, JsonFactory factory) {
+        this.mediaType = mediaType;
+        this.frameContentType = new MimeType(MimeTypeUtils.APPLICATION_OCTET_STREAM, Map.of("format", format));
+        this.factory = factory;
+    }
+
+    MimeType getFrameContentType() {
+        return frameContentType;
+    }
+
+    JsonFactory getFactory() {
+        return factory;
+    }
+
+    /**
+     * Picks the first supported binary encoding from a comma separated list of media types.
+     *
+     * @param accept the media types accepted by the client, in order of preference
+     * @return the encoding, or null to keep JSON
+     */
+    public static PayloadEncoding negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return null;
+        }
+        for (MimeType accepted : MimeTypeUtils.parseMimeTypes(accept)) {
+            if (MimeTypeUtils.APPLICATION_JSON.equalsTypeAndSubtype(accepted)) {
+                return null;
+            }
+            for (PayloadEncoding encoding : values()) {
+                if (encoding.mediaType.equalsTypeAndSubtype(accepted)) {
+                    return encoding;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,167 @@
+package com.nazran.chat.realtime;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Negotiates a binary payload encoding per STOMP connection and transcodes outbound JSON bodies.
+ * <p>
+ * A client opts in by sending {@code accept-content-type: application/x-jackson-smile} (or
+ * {@code application/cbor}) on CONNECT. Only native WebSocket sessions qualify, since SockJS
+ * transports carry text only; everyone else keeps JSON. Outbound JSON bodies are transcoded
+ * token by token with no data binding, and the result is cached by payload identity, so a
+ * broadcast is transcoded once per encoding rather than once per subscriber.
+ */
+@Slf4j
+@Component
+public class PayloadEncodingNegotiator {
+
+    /**
+     * CONNECT header listing the media types accepted by the client, in order of preference.
+     */
+    public static final String ACCEPT_HEADER = "accept-content-type";
+
+    private static final int CACHE_SLOTS = 64;
+
+    private final OutboundSessionQueues outboundSessionQueues;
+    private final JsonFactory jsonFactory;
+    private final ConcurrentMap<String, PayloadEncoding> encodingBySession = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Transcoded> transcoded = new AtomicReferenceArray<>(CACHE_SLOTS);
+
+    private final ChannelInterceptor inboundInterceptor = new ChannelInterceptor() {
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            negotiate(message);
+            return message;
+        }
+    };
+
+    private final ExecutorChannelInterceptor outboundInterceptor = new ExecutorChannelInterceptor() {
+        @Override
+        public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+            return encode(message);
+        }
+    };
+
+    public PayloadEncodingNegotiator(OutboundSessionQueues outboundSessionQueues, ObjectMapper objectMapper) {
+        this.outboundSessionQueues = outboundSessionQueues;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Interceptor for the client inbound channel, recording the encoding chosen on CONNECT.
+     */
+    public ChannelInterceptor inboundInterceptor() {
+        return inboundInterceptor;
+    }
+
+    /**
+     * Interceptor for the client outbound channel, transcoding bodies of opted-in sessions.
+     */
+    public ExecutorChannelInterceptor outboundInterceptor() {
+        return outboundInterceptor;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        encodingBySession.remove(event.getSessionId());
+    }
+
+    private void negotiate(Message<?> message) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return;
+        }
+
+        PayloadEncoding encoding = PayloadEncoding.negotiate(accessor.getFirstNativeHeader(ACCEPT_HEADER));
+        String sessionId = accessor.getSessionId();
+        if (encoding == null || sessionId == null) {
+            return;
+        }
+        if (!outboundSessionQueues.isBinaryCapable(sessionId)) {
+            log.debug("Session {} asked for {} over SockJS, keeping JSON", sessionId, encoding);
+            return;
+        }
+
+        encodingBySession.put(sessionId, encoding);
+        log.debug("Session {} negotiated {} payloads", sessionId, encoding);
+    }
+
+    private Message<?> encode(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        PayloadEncoding encoding = sessionId != null ? encodingBySession.get(sessionId) : null;
+        if (encoding == null || !(message.getPayload() instanceof byte[] json) || json.length == 0
+                || !isJson(message.getHeaders().get(MessageHeaders.CONTENT_TYPE))) {
+            return message;
+        }
+
+        byte[] encoded;
+        try {
+            encoded = transcode(json, encoding);
+        } catch (IOException e) {
+            log.warn("Failed to transcode payload to {} for session {}: {}", encoding, sessionId, e.getMessage());
+            return message;
+        }
+
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        accessor.setContentType(encoding.getFrameContentType());
+        return MessageBuilder.createMessage(encoded, accessor.getMessageHeaders());
+    }
+
+    private byte[] transcode(byte[] json, PayloadEncoding encoding) throws IOException {
+        int slot = (System.identityHashCode(json) * 31 + encoding.ordinal()) & (CACHE_SLOTS - 1);
+        Transcoded cached = transcoded.get(slot);
+        if (cached != null && cached.source() == json && cached.encoding() == encoding) {
+            return cached.bytes();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = jsonFactory.createParser(json);
+             JsonGenerator generator = encoding.getFactory().createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+
+        byte[] bytes = out.toByteArray();
+        transcoded.set(slot, new Transcoded(json, encoding, bytes));
+        return bytes;
+    }
+
+    private boolean isJson(Object contentType) {
+        if (contentType instanceof MimeType mimeType) {
+            return MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType);
+        }
+        if (contentType instanceof String value) {
+            return MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(MimeTypeUtils.parseMimeType(value));
+        }
+        return false;
+    }
+
+    private record Transcoded(byte[] source, PayloadEncoding encoding, byte[] bytes) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.nazran.chat.realtime;
+
+import com.nazran.chat.dto.websocket.PresenceUpdateDto;
+import com.nazran.chat.repository.ConversationRepository;
+import com.nazran.chat.repository.ConversationRepository.ConversationPeer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers presence transitions to the users who can see them.
+ * <p>
+ * Only online/offline transitions are queued. Transitions are coalesced per user and
+ * published on a fixed delay as one batch frame per recipient on {@code /user/queue/presence}.
+ * Recipients are the online users sharing a conversation with the subject, resolved with
+ * one query per batch, so the traffic no longer grows with the square of connected clients.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PresenceBroadcaster {
+
+    private static final String PRESENCE_QUEUE = "/queue/presence";
+
+    private final PresenceRegistry presenceRegistry;
+    private final ConversationRepository conversationRepository;
+    private final OutboundPayloadCache outboundPayloadCache;
+
+    private final Set<Integer> pendingUserIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Queues a presence transition of a user for the next batch.
+     *
+     * @param userId the user whose online status changed
+     */
+    public void enqueue(Integer userId) {
+        pendingUserIds.add(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.broadcast-interval-ms:2000}")
+    public void publishPending() {
+        if (pendingUserIds.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> changedUserIds = new HashSet<>();
+        Iterator<Integer> iterator = pendingUserIds.iterator();
+        while (iterator.hasNext()) {
+            changedUserIds.add(iterator.next());
+            iterator.remove();
+        }
+
+        // Each subject's update is serialized once and reused in the frame of every recipient
+        Map<Integer, EncodedPayload> encodedUpdates = new HashMap<>();
+        Map<String, List<EncodedPayload>> framesByRecipient = new HashMap<>();
+        for (ConversationPeer peer : conversationRepository.findConversationPeers(changedUserIds)) {
+            if (!presenceRegistry.isOnline(peer.getPeerId())) {
+                continue;
+            }
+
+            presenceRegistry.get(peer.getSubjectId()).ifPresent(snapshot ->
+                    framesByRecipient
+                            .computeIfAbsent(peer.getPeerFirebaseUserId(), key -> new ArrayList<>())
+                            .add(encodedUpdates.computeIfAbsent(peer.getSubjectId(), subjectId ->
+                                    outboundPayloadCache.encode(mapToPresenceUpdate(snapshot, peer.getSubjectName())))));
+        }
+
+        framesByRecipient.forEach((firebaseUserId, updates) ->
+                outboundPayloadCache.sendToUser(firebaseUserId, PRESENCE_QUEUE, outboundPayloadCache.encodeArray(updates)));
+
+        log.debug("Published {} presence transitions to {} recipients",
+                changedUserIds.size(), framesByRecipient.size());
+    }
+
+    private PresenceUpdateDto mapToPresenceUpdate(PresenceSnapshot snapshot, String userName) {
+        return PresenceUpdateDto.builder()
+                .userId(snapshot.getUserId())
+                .userName(userName)
+                .isOnline(snapshot.isOnline())
+                .timestamp(snapshot.getLastSeen() != null
+                        ? snapshot.getLastSeen().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) : null)
+                .build();
+    }
+}
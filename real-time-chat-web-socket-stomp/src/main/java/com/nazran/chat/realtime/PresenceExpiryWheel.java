@@ -0,0 +1,122 @@
+package com.nazran.chat.realtime;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hashed timing wheel tracking heartbeat deadlines of users.
+ * <p>
+ * A heartbeat costs two hash operations: the user's deadline tick is recorded and the
+ * user is added to the slot of that tick. Entries left behind in older slots are
+ * discarded lazily when their slot comes round. Advancing the wheel only visits the
+ * slots of elapsed ticks, so the sweep cost is proportional to the number of expiring
+ * users rather than to the number of tracked users.
+ * <p>
+ * {@link #touch} and {@link #cancel} may be called concurrently; {@link #advance}
+ * must be called from a single thread.
+ */
+public class PresenceExpiryWheel {
+
+    private final long tickMillis;
+    private final long timeoutTicks;
+    private final long startMillis;
+    private final List<Set<Integer>> slots;
+    private final ConcurrentMap<Integer, Long> deadlines = new ConcurrentHashMap<>();
+
+    private long processedTick;
+
+    public PresenceExpiryWheel(long tickMillis, long timeoutMillis, long startMillis) {
+        if (tickMillis <= 0 || timeoutMillis < tickMillis) {
+            throw new IllegalArgumentException("Timeout must be at least one tick and tick must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.timeoutTicks = (timeoutMillis + tickMillis - 1) / tickMillis;
+        this.startMillis = startMillis;
+
+        // One slot per tick of the timeout window, so no slot holds more than one live round
+        int wheelSize = (int) timeoutTicks + 1;
+        this.slots = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            slots.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Records a heartbeat, moving the user's deadline to one timeout from now.
+     *
+     * @param userId    the user ID
+     * @param nowMillis the current time in milliseconds
+     */
+    public void touch(Integer userId, long nowMillis) {
+        long deadline = tickOf(nowMillis) + timeoutTicks;
+        deadlines.put(userId, deadline);
+        slotOf(deadline).add(userId);
+    }
+
+    /**
+     * Stops tracking a user, e.g. after an explicit offline.
+     *
+     * @param userId the user ID
+     */
+    public void cancel(Integer userId) {
+        deadlines.remove(userId);
+    }
+
+    /**
+     * Returns the number of users currently tracked.
+     */
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Advances the wheel up to the current time and returns the users whose deadline passed.
+     *
+     * @param nowMillis the current time in milliseconds
+     * @return IDs of users that missed their heartbeat window
+     */
+    public List<Integer> advance(long nowMillis) {
+        List<Integer> expired = new ArrayList<>();
+        long currentTick = tickOf(nowMillis);
+
+        while (processedTick < currentTick) {
+            processedTick++;
+            Set<Integer> slot = slotOf(processedTick);
+            List<Integer> stillPending = new ArrayList<>();
+
+            Iterator<Integer> iterator = slot.iterator();
+            while (iterator.hasNext()) {
+                Integer userId = iterator.next();
+                iterator.remove();
+
+                Long deadline = deadlines.get(userId);
+                if (deadline == null) {
+                    continue;
+                }
+                if (deadline <= processedTick) {
+                    // Fails if a concurrent heartbeat has just moved the deadline
+                    if (deadlines.remove(userId, deadline)) {
+                        expired.add(userId);
+                    }
+                } else if (slotOf(deadline) == slot) {
+                    // Live entry of a later round (only possible when advancing lags behind)
+                    stillPending.add(userId);
+                }
+            }
+            slot.addAll(stillPending);
+        }
+        return expired;
+    }
+
+    private long tickOf(long millis) {
+        return Math.max(0, millis - startMillis) / tickMillis;
+    }
+
+    private Set<Integer> slotOf(long tick) {
+        return slots.get((int) (tick % slots.size()));
+    }
+}
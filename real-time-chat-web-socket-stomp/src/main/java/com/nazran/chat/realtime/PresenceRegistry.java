@@ -0,0 +1,181 @@
+package com.nazran.chat.realtime;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory registry of user presence, authoritative for online status and last seen.
+ * <p>
+ * Heartbeats and online/offline changes only touch memory and mark the user dirty.
+ * Dirty users are written behind to {@code chat.user_presence} in batched upserts
+ * on a fixed delay, so the database sees one row write per user per flush interval
+ * instead of a transaction per heartbeat.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PresenceRegistry {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO chat.user_presence (user_id, is_online, last_seen, device_info, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (user_id) DO UPDATE SET " +
+            "is_online = EXCLUDED.is_online, " +
+            "last_seen = EXCLUDED.last_seen, " +
+            "device_info = COALESCE(EXCLUDED.device_info, chat.user_presence.device_info), " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentMap<Integer, PresenceSnapshot> presences = new ConcurrentHashMap<>();
+    private final Set<Integer> dirtyUserIds = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger onlineCount = new AtomicInteger();
+
+    @Value("${chat.presence.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    /**
+     * Loads last seen values from the database. Nobody is connected right after startup,
+     * so every persisted online flag is reset to offline.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        jdbcTemplate.update("UPDATE chat.user_presence SET is_online = FALSE WHERE is_online = TRUE");
+
+        jdbcTemplate.query("SELECT user_id, last_seen, device_info FROM chat.user_presence", rs -> {
+            Integer userId = rs.getInt("user_id");
+            presences.put(userId, new PresenceSnapshot(
+                    userId,
+                    false,
+                    rs.getObject("last_seen", OffsetDateTime.class),
+                    rs.getString("device_info")));
+        });
+
+        log.info("Presence registry loaded with {} users", presences.size());
+    }
+
+    /**
+     * Marks a user online and refreshes last seen.
+     *
+     * @param userId     the user ID
+     * @param deviceInfo optional device information
+     * @return true if the user was offline before
+     */
+    public boolean markOnline(Integer userId, String deviceInfo) {
+        return update(userId, true, deviceInfo);
+    }
+
+    /**
+     * Marks a user offline and refreshes last seen.
+     *
+     * @param userId the user ID
+     * @return true if the user was online before
+     */
+    public boolean markOffline(Integer userId) {
+        return update(userId, false, null);
+    }
+
+    public Optional<PresenceSnapshot> get(Integer userId) {
+        return Optional.ofNullable(presences.get(userId));
+    }
+
+    public boolean isOnline(Integer userId) {
+        PresenceSnapshot snapshot = presences.get(userId);
+        return snapshot != null && snapshot.isOnline();
+    }
+
+    /**
+     * Returns the number of online users without scanning the registry.
+     */
+    public int getOnlineCount() {
+        return onlineCount.get();
+    }
+
+    public List<PresenceSnapshot> getOnline() {
+        List<PresenceSnapshot> online = new ArrayList<>();
+        for (PresenceSnapshot snapshot : presences.values()) {
+            if (snapshot.isOnline()) {
+                online.add(snapshot);
+            }
+        }
+        return online;
+    }
+
+    /**
+     * Writes dirty presences to {@code chat.user_presence} in batched upserts.
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.flush-interval-ms:5000}")
+    public void flush() {
+        if (dirtyUserIds.isEmpty()) {
+            return;
+        }
+
+        List<PresenceSnapshot> batch = new ArrayList<>();
+        Iterator<Integer> iterator = dirtyUserIds.iterator();
+        while (iterator.hasNext()) {
+            Integer userId = iterator.next();
+            iterator.remove();
+            PresenceSnapshot snapshot = presences.get(userId);
+            if (snapshot != null) {
+                batch.add(snapshot);
+            }
+        }
+
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, batch, flushBatchSize, (ps, snapshot) -> {
+                ps.setInt(1, snapshot.getUserId());
+                ps.setBoolean(2, snapshot.isOnline());
+                ps.setObject(3, snapshot.getLastSeen());
+                ps.setString(4, snapshot.getDeviceInfo());
+                ps.setObject(5, now);
+            });
+            log.debug("Flushed {} presence updates", batch.size());
+        } catch (DataAccessException e) {
+            log.error("Failed to flush {} presence updates: {}", batch.size(), e.getMessage(), e);
+            // Retry on the next flush; newer in-memory state is picked up then
+            batch.forEach(snapshot -> dirtyUserIds.add(snapshot.getUserId()));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private boolean update(Integer userId, boolean online, String deviceInfo) {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        boolean[] transitioned = new boolean[1];
+
+        presences.compute(userId, (id, current) -> {
+            transitioned[0] = current == null ? online : current.isOnline() != online;
+            String device = deviceInfo != null ? deviceInfo : (current != null ? current.getDeviceInfo() : null);
+            return new PresenceSnapshot(id, online, now, device);
+        });
+        dirtyUserIds.add(userId);
+
+        if (transitioned[0]) {
+            onlineCount.addAndGet(online ? 1 : -1);
+        }
+        return transitioned[0];
+    }
+}
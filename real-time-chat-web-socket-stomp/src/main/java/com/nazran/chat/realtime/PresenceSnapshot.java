@@ -0,0 +1,19 @@
+package com.nazran.chat.realtime;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Immutable view of a user's presence held by {@link PresenceRegistry}.
+ */
+@Getter
+@AllArgsConstructor
+public class PresenceSnapshot {
+
+    private final Integer userId;
+    private final boolean online;
+    private final OffsetDateTime lastSeen;
+    private final String deviceInfo;
+}
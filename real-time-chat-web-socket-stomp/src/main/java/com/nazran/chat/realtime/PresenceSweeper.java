@@ -0,0 +1,73 @@
+package com.nazran.chat.realtime;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Marks users offline when they stop sending heartbeats.
+ * <p>
+ * Heartbeat deadlines are kept in a {@link PresenceExpiryWheel}; every sweep advances the
+ * wheel and takes the users that missed the configured window offline, covering crashed
+ * tabs and dropped mobile connections that never send an explicit offline.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PresenceSweeper {
+
+    private final PresenceRegistry presenceRegistry;
+    private final PresenceBroadcaster presenceBroadcaster;
+
+    @Value("${chat.presence.sweep-interval-ms:1000}")
+    private long sweepIntervalMillis;
+
+    @Value("${chat.presence.heartbeat-timeout-ms:90000}")
+    private long heartbeatTimeoutMillis;
+
+    private PresenceExpiryWheel wheel;
+
+    @PostConstruct
+    public void initialize() {
+        wheel = new PresenceExpiryWheel(sweepIntervalMillis, heartbeatTimeoutMillis, System.currentTimeMillis());
+        log.info("Presence sweeper started with {} ms heartbeat timeout", heartbeatTimeoutMillis);
+    }
+
+    /**
+     * Records a heartbeat of an online user.
+     *
+     * @param userId the user ID
+     */
+    public void touch(Integer userId) {
+        wheel.touch(userId, System.currentTimeMillis());
+    }
+
+    /**
+     * Stops tracking a user that went offline explicitly.
+     *
+     * @param userId the user ID
+     */
+    public void cancel(Integer userId) {
+        wheel.cancel(userId);
+    }
+
+    @Scheduled(fixedRateString = "${chat.presence.sweep-interval-ms:1000}")
+    public void sweep() {
+        List<Integer> expired = wheel.advance(System.currentTimeMillis());
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        for (Integer userId : expired) {
+            if (presenceRegistry.markOffline(userId)) {
+                presenceBroadcaster.enqueue(userId);
+            }
+        }
+        log.info("Marked {} users offline after missed heartbeats ({} still tracked)", expired.size(), wheel.size());
+    }
+}
@@ -0,0 +1,220 @@
+package com.nazran.chat.realtime;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * WebSocket session with a bounded, prioritized outbound queue.
+ * <p>
+ * {@link #sendMessage} only enqueues and returns; frames are written by a drain task on
+ * the shared drain executor, high priority lane first. A drain task writes a bounded
+ * batch and then yields its thread to other sessions. Low priority frames are kept in
+ * order, since each one is a delta, and dropped once the queue is deeper than the low
+ * priority threshold. A session whose queue stays deep for too long, whose high priority
+ * lane overflows or whose write blocks for too long is closed by
+ * {@link OutboundSessionQueues}.
+ */
+@Slf4j
+class PrioritizedWebSocketSession extends WebSocketSessionDecorator {
+
+    private static final int MAX_FRAMES_PER_DRAIN = 64;
+
+    private final OutboundSessionQueues queues;
+    private final Executor drainExecutor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<WebSocketMessage<?>> highLane = new ArrayDeque<>();
+    private final Deque<WebSocketMessage<?>> lowLane = new ArrayDeque<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closing = new AtomicBoolean();
+
+    private volatile int highDepth;
+    private volatile int lowDepth;
+    private volatile long behindSinceMillis;
+    private volatile long writeStartedAtMillis;
+
+    PrioritizedWebSocketSession(WebSocketSession delegate, OutboundSessionQueues queues, Executor drainExecutor) {
+        super(delegate);
+        this.queues = queues;
+        this.drainExecutor = drainExecutor;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        if (closing.get()) {
+            return;
+        }
+
+        OutboundPriority priority = OutboundPriority.of(OutboundPriority.destinationOf(message));
+        boolean overflow = false;
+
+        lock.lock();
+        try {
+            if (priority == OutboundPriority.LOW) {
+                if (depth() >= queues.getLowPriorityThreshold()) {
+                    queues.recordDropped();
+                } else {
+                    lowLane.addLast(message);
+                }
+            } else {
+                highLane.addLast(message);
+                overflow = highLane.size() > queues.getMaxQueuedMessages();
+            }
+            updateDepth();
+        } finally {
+            lock.unlock();
+        }
+
+        if (overflow) {
+            close("overflow");
+            return;
+        }
+        scheduleDrain();
+    }
+
+    int getHighDepth() {
+        return highDepth;
+    }
+
+    int getLowDepth() {
+        return lowDepth;
+    }
+
+    /**
+     * Returns how long the queue has been deeper than the low priority threshold, or 0.
+     */
+    long behindForMillis(long nowMillis) {
+        long since = behindSinceMillis;
+        return since == 0 ? 0 : nowMillis - since;
+    }
+
+    /**
+     * Returns how long the current write has been blocked, or 0 if nothing is being written.
+     */
+    long writingForMillis(long nowMillis) {
+        long startedAt = writeStartedAtMillis;
+        return startedAt == 0 ? 0 : nowMillis - startedAt;
+    }
+
+    /**
+     * Schedules a drain if frames are queued but none is running, e.g. after the drain
+     * executor rejected one.
+     */
+    void resumeDrain() {
+        if (!closing.get() && highDepth + lowDepth > 0) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Closes the underlying session because it cannot keep up, once.
+     *
+     * @param reason short reason code, used as metric tag
+     */
+    void close(String reason) {
+        if (!closing.compareAndSet(false, true)) {
+            return;
+        }
+        queues.recordDisconnected(reason);
+        log.warn("Closing WebSocket session {}: {} (queued: {} high, {} low)", getId(), reason, highDepth, lowDepth);
+
+        clear();
+        try {
+            getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.debug("Failed to close WebSocket session {}: {}", getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Discards everything still queued.
+     */
+    void clear() {
+        lock.lock();
+        try {
+            highLane.clear();
+            lowLane.clear();
+            updateDepth();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            drainExecutor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // Frames stay queued; the sweep resumes the drain, or closes the session if it stays behind
+            draining.set(false);
+            queues.recordDrainRejected();
+        }
+    }
+
+    private void drain() {
+        for (int written = 0; written < MAX_FRAMES_PER_DRAIN; written++) {
+            WebSocketMessage<?> next;
+            lock.lock();
+            try {
+                next = poll();
+                if (next == null) {
+                    draining.set(false);
+                    return;
+                }
+                updateDepth();
+            } finally {
+                lock.unlock();
+            }
+
+            writeStartedAtMillis = System.currentTimeMillis();
+            try {
+                getDelegate().sendMessage(next);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Failed to write to WebSocket session {}: {}", getId(), e.getMessage());
+                draining.set(false);
+                close("write-failed");
+                return;
+            } finally {
+                writeStartedAtMillis = 0;
+            }
+        }
+
+        // Batch done; queue up behind the other sessions if there is more to write
+        draining.set(false);
+        resumeDrain();
+    }
+
+    private WebSocketMessage<?> poll() {
+        WebSocketMessage<?> next = highLane.pollFirst();
+        return next != null ? next : lowLane.pollFirst();
+    }
+
+    private int depth() {
+        return highLane.size() + lowLane.size();
+    }
+
+    private void updateDepth() {
+        highDepth = highLane.size();
+        lowDepth = lowLane.size();
+        if (depth() > queues.getLowPriorityThreshold()) {
+            if (behindSinceMillis == 0) {
+                behindSinceMillis = System.currentTimeMillis();
+            }
+        } else {
+            behindSinceMillis = 0;
+        }
+    }
+}
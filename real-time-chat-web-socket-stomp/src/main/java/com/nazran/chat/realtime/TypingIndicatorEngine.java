@@ -0,0 +1,185 @@
+package com.nazran.chat.realtime;
+
+import com.nazran.chat.dto.websocket.TypingIndicatorDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSubscription;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps typing state of conversations in memory and publishes it in coalesced frames.
+ * <p>
+ * Start/stop events only update the per-conversation typing set. On every interval the
+ * conversations whose set changed are published as one frame each on
+ * {@code /topic/conversation/{id}/typing}, containing only the users whose status differs
+ * from what was last published, so bursts of keystroke events collapse into at most one
+ * frame per conversation per interval. Typing flags that are not refreshed within the
+ * configured TTL expire on their own, and frames are skipped entirely when nobody other
+ * than the typing users is subscribed to the topic.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TypingIndicatorEngine {
+
+    private static final String TYPING_DESTINATION_PREFIX = "/topic/conversation/";
+    private static final String TYPING_DESTINATION_SUFFIX = "/typing";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry simpUserRegistry;
+
+    @Value("${chat.typing.ttl-ms:6000}")
+    private long typingTtlMillis;
+
+    private final ConcurrentMap<Integer, ConversationTyping> conversations = new ConcurrentHashMap<>();
+
+    /**
+     * Records a typing start or stop of a user.
+     *
+     * @param conversationId the conversation ID
+     * @param userId         the user ID
+     * @param firebaseUserId the Firebase UID of the user
+     * @param userName       the display name of the user
+     * @param isTyping       whether the user is typing
+     */
+    public void update(Integer conversationId, Integer userId, String firebaseUserId, String userName, boolean isTyping) {
+        if (isTyping) {
+            long expiresAt = System.currentTimeMillis() + typingTtlMillis;
+            // Updated inside compute so that it cannot race with the removal of idle conversations
+            conversations.compute(conversationId, (id, typing) -> {
+                ConversationTyping current = typing != null ? typing : new ConversationTyping();
+                current.typers.put(userId, new Typer(firebaseUserId, userName, expiresAt));
+                return current;
+            });
+        } else {
+            conversations.computeIfPresent(conversationId, (id, typing) -> {
+                typing.typers.remove(userId);
+                return typing;
+            });
+        }
+    }
+
+    @Scheduled(fixedRateString = "${chat.typing.broadcast-interval-ms:500}")
+    public void publishChanges() {
+        if (conversations.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Map<Integer, List<TypingIndicatorDto>> framesByConversation = new HashMap<>();
+        Map<Integer, Set<String>> changedUsersByConversation = new HashMap<>();
+
+        for (Map.Entry<Integer, ConversationTyping> entry : conversations.entrySet()) {
+            Integer conversationId = entry.getKey();
+            ConversationTyping typing = entry.getValue();
+
+            typing.typers.entrySet().removeIf(typer -> typer.getValue().expiresAt() <= now);
+
+            List<TypingIndicatorDto> changes = typing.collectChanges(conversationId);
+            if (!changes.isEmpty()) {
+                framesByConversation.put(conversationId, changes);
+                changedUsersByConversation.put(conversationId, typing.lastChangedUsers);
+            }
+
+            conversations.computeIfPresent(conversationId, (id, current) ->
+                    current.typers.isEmpty() && current.published.isEmpty() ? null : current);
+        }
+
+        if (framesByConversation.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, Set<String>> subscribersByConversation = findSubscribers(framesByConversation.keySet());
+        framesByConversation.forEach((conversationId, changes) -> {
+            Set<String> audience = new HashSet<>(subscribersByConversation.getOrDefault(conversationId, Set.of()));
+            audience.removeAll(changedUsersByConversation.get(conversationId));
+            if (audience.isEmpty()) {
+                return;
+            }
+            messagingTemplate.convertAndSend(typingDestination(conversationId), changes);
+        });
+    }
+
+    /**
+     * Resolves the users subscribed to the typing topics of the given conversations
+     * with a single pass over the subscription registry.
+     */
+    private Map<Integer, Set<String>> findSubscribers(Set<Integer> conversationIds) {
+        Map<String, Integer> conversationByDestination = new HashMap<>();
+        for (Integer conversationId : conversationIds) {
+            conversationByDestination.put(typingDestination(conversationId), conversationId);
+        }
+
+        Map<Integer, Set<String>> subscribers = new HashMap<>();
+        for (SimpSubscription subscription : simpUserRegistry.findSubscriptions(
+                candidate -> conversationByDestination.containsKey(candidate.getDestination()))) {
+            subscribers.computeIfAbsent(conversationByDestination.get(subscription.getDestination()), id -> new HashSet<>())
+                    .add(subscription.getSession().getUser().getName());
+        }
+        return subscribers;
+    }
+
+    private String typingDestination(Integer conversationId) {
+        return TYPING_DESTINATION_PREFIX + conversationId + TYPING_DESTINATION_SUFFIX;
+    }
+
+    private record Typer(String firebaseUserId, String userName, long expiresAt) {
+    }
+
+    /**
+     * Typing set of one conversation together with the state last published for it.
+     * The published state is only touched by the scheduled publisher.
+     */
+    private static final class ConversationTyping {
+
+        private final ConcurrentMap<Integer, Typer> typers = new ConcurrentHashMap<>();
+        private final Map<Integer, Typer> published = new HashMap<>();
+        private Set<String> lastChangedUsers = Set.of();
+
+        private List<TypingIndicatorDto> collectChanges(Integer conversationId) {
+            List<TypingIndicatorDto> changes = new ArrayList<>();
+            Set<String> changedUsers = new HashSet<>();
+
+            Map<Integer, Typer> current = new HashMap<>(typers);
+            current.forEach((userId, typer) -> {
+                if (!published.containsKey(userId)) {
+                    changes.add(toDto(conversationId, userId, typer, true));
+                    changedUsers.add(typer.firebaseUserId());
+                }
+            });
+            published.forEach((userId, typer) -> {
+                if (!current.containsKey(userId)) {
+                    changes.add(toDto(conversationId, userId, typer, false));
+                    changedUsers.add(typer.firebaseUserId());
+                }
+            });
+
+            published.clear();
+            published.putAll(current);
+            lastChangedUsers = changedUsers;
+            return changes;
+        }
+
+        private TypingIndicatorDto toDto(Integer conversationId, Integer userId, Typer typer, boolean isTyping) {
+            return TypingIndicatorDto.builder()
+                    .conversationId(conversationId)
+                    .userId(userId)
+                    .userName(typer.userName())
+                    .isTyping(isTyping)
+                    .build();
+        }
+    }
+}
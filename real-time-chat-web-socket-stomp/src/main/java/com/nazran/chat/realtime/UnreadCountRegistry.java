@@ -0,0 +1,236 @@
+package com.nazran.chat.realtime;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory registry of unread message counts per conversation and user.
+ * <p>
+ * Counters are {@link AtomicLong}s, so concurrent increments on a busy conversation are
+ * lock-free instead of contending on a single row lock, and an absolute value can replace
+ * a counter atomically without losing increments. Reads are served from memory. Changed
+ * counters are written behind to {@code chat.conversation_unread_count} as absolute values
+ * in batched upserts on a fixed delay. On startup the counters are derived from the read
+ * watermarks, which are the source of truth for read state.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UnreadCountRegistry {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO chat.conversation_unread_count (conversation_id, user_id, unread_count, updated_at) " +
+            "VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (conversation_id, user_id) DO UPDATE SET " +
+            "unread_count = EXCLUDED.unread_count, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private static final String LOAD_SQL =
+            "SELECT p.conversation_id, p.user_id, COUNT(m.id) AS unread_count " +
+            "FROM (SELECT id AS conversation_id, customer_id AS user_id FROM chat.conversations " +
+            "      UNION " +
+            "      SELECT id, super_admin_id FROM chat.conversations WHERE super_admin_id IS NOT NULL) p " +
+            "LEFT JOIN chat.conversation_unread_count cuc " +
+            "    ON cuc.conversation_id = p.conversation_id AND cuc.user_id = p.user_id " +
+            "JOIN chat.messages m ON m.conversation_id = p.conversation_id " +
+            "    AND m.sender_id <> p.user_id " +
+            "    AND m.message_type <> 'SYSTEM' " +
+            "    AND m.status = 'SENT' " +
+            "    AND m.id > COALESCE(cuc.last_read_message_id, 0) " +
+            "GROUP BY p.conversation_id, p.user_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Counters grouped by user, so totals only visit the conversations of one user.
+     */
+    private final ConcurrentMap<Integer, ConcurrentMap<Integer, AtomicLong>> countersByUser = new ConcurrentHashMap<>();
+    private final Set<CounterKey> dirtyKeys = ConcurrentHashMap.newKeySet();
+
+    @Value("${chat.unread.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    /**
+     * Derives the counters from the read watermarks of the conversation participants.
+     * Values replace the in-memory counts: messages that were incremented before the
+     * application was ready are already committed and therefore included in the query.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        int[] loaded = new int[1];
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            counter(rs.getInt("conversation_id"), rs.getInt("user_id")).set(rs.getLong("unread_count"));
+            loaded[0]++;
+        });
+
+        log.info("Unread count registry loaded with {} counters", loaded[0]);
+    }
+
+    /**
+     * Increments the unread count of every recipient of a new message.
+     *
+     * @param conversationId the conversation ID
+     * @param userIds        the recipients
+     */
+    public void increment(Integer conversationId, Collection<Integer> userIds) {
+        for (Integer userId : userIds) {
+            counter(conversationId, userId).incrementAndGet();
+            dirtyKeys.add(new CounterKey(conversationId, userId));
+        }
+    }
+
+    /**
+     * Resets the unread count of a user in a conversation.
+     *
+     * @param conversationId the conversation ID
+     * @param userId         the user ID
+     */
+    public void reset(Integer conversationId, Integer userId) {
+        set(conversationId, userId, 0L);
+    }
+
+    /**
+     * Sets the unread count of a user in a conversation, e.g. after a partial read.
+     *
+     * @param conversationId the conversation ID
+     * @param userId         the user ID
+     * @param unreadCount    the new unread count
+     */
+    public void set(Integer conversationId, Integer userId, long unreadCount) {
+        ConcurrentMap<Integer, AtomicLong> counters = countersByUser.get(userId);
+        AtomicLong counter = counters != null ? counters.get(conversationId) : null;
+        if (counter == null && unreadCount == 0) {
+            return;
+        }
+        if (counter == null) {
+            counter = counter(conversationId, userId);
+        }
+        if (counter.getAndSet(unreadCount) != unreadCount) {
+            dirtyKeys.add(new CounterKey(conversationId, userId));
+        }
+    }
+
+    public long get(Integer conversationId, Integer userId) {
+        ConcurrentMap<Integer, AtomicLong> counters = countersByUser.get(userId);
+        AtomicLong counter = counters != null ? counters.get(conversationId) : null;
+        return counter != null ? counter.get() : 0L;
+    }
+
+    /**
+     * Returns the unread counts of a user for the given conversations.
+     *
+     * @param userId          the user ID
+     * @param conversationIds the conversation IDs
+     * @return unread count by conversation ID; conversations without unread messages are omitted
+     */
+    public Map<Integer, Long> getForUser(Integer userId, Collection<Integer> conversationIds) {
+        ConcurrentMap<Integer, AtomicLong> counters = countersByUser.get(userId);
+        if (counters == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<Integer, Long> counts = new HashMap<>();
+        for (Integer conversationId : conversationIds) {
+            AtomicLong counter = counters.get(conversationId);
+            long count = counter != null ? counter.get() : 0L;
+            if (count > 0) {
+                counts.put(conversationId, count);
+            }
+        }
+        return counts;
+    }
+
+    public long getTotal(Integer userId) {
+        ConcurrentMap<Integer, AtomicLong> counters = countersByUser.get(userId);
+        if (counters == null) {
+            return 0L;
+        }
+
+        long total = 0;
+        for (AtomicLong counter : counters.values()) {
+            total += counter.get();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the sum of all unread counts.
+     */
+    public long getGrandTotal() {
+        long total = 0;
+        for (ConcurrentMap<Integer, AtomicLong> counters : countersByUser.values()) {
+            for (AtomicLong counter : counters.values()) {
+                total += counter.get();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Writes changed counters to {@code chat.conversation_unread_count} in batched upserts.
+     */
+    @Scheduled(fixedDelayString = "${chat.unread.flush-interval-ms:5000}")
+    public void flush() {
+        if (dirtyKeys.isEmpty()) {
+            return;
+        }
+
+        List<CounterKey> batch = new ArrayList<>();
+        Iterator<CounterKey> iterator = dirtyKeys.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, batch, flushBatchSize, (ps, key) -> {
+                ps.setInt(1, key.conversationId());
+                ps.setInt(2, key.userId());
+                ps.setInt(3, (int) get(key.conversationId(), key.userId()));
+                ps.setObject(4, now);
+            });
+            log.debug("Flushed {} unread counters", batch.size());
+        } catch (DataAccessException e) {
+            log.error("Failed to flush {} unread counters: {}", batch.size(), e.getMessage(), e);
+            // Retry on the next flush; the current value is read again then
+            dirtyKeys.addAll(batch);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private AtomicLong counter(Integer conversationId, Integer userId) {
+        return countersByUser
+                .computeIfAbsent(userId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(conversationId, id -> new AtomicLong());
+    }
+
+    private record CounterKey(int conversationId, int userId) {
+    }
+}
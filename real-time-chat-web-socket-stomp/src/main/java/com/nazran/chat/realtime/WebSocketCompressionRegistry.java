@@ -0,0 +1,138 @@
+package com.nazran.chat.realtime;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Admits WebSocket sessions to permessage-deflate within a memory budget and tracks them.
+ * <p>
+ * The container compresses every data frame of a session that negotiated the extension and
+ * keeps a zlib deflate and inflate context for the life of the connection. The window size of
+ * {@link java.util.zip.Deflater} cannot be lowered, so each context costs a fixed amount of
+ * native memory and the total is bounded by capping the number of compressed sessions at
+ * {@code chat.ws.deflate.memory-budget-bytes / CONTEXT_BYTES}. Sessions over the budget
+ * connect uncompressed. Admission is checked at handshake time, so concurrent handshakes can
+ * overshoot the cap by at most their own number.
+ * <p>
+ * The container does not expose its zlib contexts, so the memory gauge is an estimate: the
+ * number of compressed sessions times {@link #CONTEXT_BYTES}. It is not a measurement of
+ * native memory and does not move with actual deflater usage.
+ * <p>
+ * Once negotiated, Tomcat compresses every data frame and offers no per-message size
+ * threshold. Small frames stay cheap because context takeover is kept, and typing frames are
+ * few because {@link TypingIndicatorEngine} coalesces them per conversation and interval; the
+ * outbound queues deliver low priority frames in order without collapsing them.
+ */
+@Slf4j
+@Component
+public class WebSocketCompressionRegistry implements WebSocketHandlerDecoratorFactory {
+
+    /**
+     * Name of the extension in the {@code Sec-WebSocket-Extensions} header.
+     */
+    public static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    /**
+     * Assumed native memory per compressed session: the deflate state at zlib defaults
+     * (windowBits 15, memLevel 8) is about 256 KiB, the inflate window 32 KiB, plus headers.
+     * Used for the session cap and the estimated memory gauge; never measured.
+     */
+    static final long CONTEXT_BYTES = 300 * 1024L;
+
+    private static final String HANDSHAKES_METRIC = "chat.ws.deflate.handshakes";
+
+    private final Set<String> compressedSessions = ConcurrentHashMap.newKeySet();
+    private final Counter negotiated;
+    private final Counter overBudget;
+    private final Counter disabled;
+
+    @Getter
+    private final boolean enabled;
+
+    @Getter
+    private final int maxSessions;
+
+    public WebSocketCompressionRegistry(MeterRegistry meterRegistry,
+                                        @Value("${chat.ws.deflate.enabled:true}") boolean enabled,
+                                        @Value("${chat.ws.deflate.memory-budget-bytes:67108864}") long memoryBudgetBytes) {
+        this.enabled = enabled;
+        this.maxSessions = (int) Math.min(Integer.MAX_VALUE, memoryBudgetBytes / CONTEXT_BYTES);
+
+        this.negotiated = handshakeCounter(meterRegistry, "negotiated");
+        this.overBudget = handshakeCounter(meterRegistry, "over-budget");
+        this.disabled = handshakeCounter(meterRegistry, "disabled");
+
+        Gauge.builder("chat.ws.deflate.sessions", compressedSessions, Set::size)
+                .description("WebSocket sessions with permessage-deflate")
+                .register(meterRegistry);
+        Gauge.builder("chat.ws.deflate.context.memory.estimated", compressedSessions,
+                        sessions -> (double) sessions.size() * CONTEXT_BYTES)
+                .description("Estimated native memory of compression contexts: compressed sessions x assumed per-session context size, not measured")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        log.info("permessage-deflate {} (max compressed sessions: {})", enabled ? "enabled" : "disabled", maxSessions);
+    }
+
+    /**
+     * Decides whether a handshake offering permessage-deflate may negotiate it.
+     *
+     * @return true if the offer can be passed on to the container
+     */
+    public boolean admit() {
+        if (!enabled) {
+            disabled.increment();
+            return false;
+        }
+        if (compressedSessions.size() >= maxSessions) {
+            overBudget.increment();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (isCompressed(session)) {
+                    compressedSessions.add(session.getId());
+                    negotiated.increment();
+                }
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                compressedSessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    private boolean isCompressed(WebSocketSession session) {
+        return session.getExtensions().stream()
+                .anyMatch(extension -> PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName()));
+    }
+
+    private Counter handshakeCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder(HANDSHAKES_METRIC)
+                .tag("result", result)
+                .description("WebSocket handshakes offering permessage-deflate")
+                .register(meterRegistry);
+    }
+}
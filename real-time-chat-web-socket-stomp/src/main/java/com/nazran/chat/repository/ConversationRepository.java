@@ -4,11 +4,14 @@ import com.nazran.chat.entity.Conversation;
 import com.nazran.chat.enums.ConversationStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -24,6 +27,7 @@ public interface ConversationRepository extends JpaRepository<Conversation, Inte
      * @param pageable   pagination parameters
      * @return page of conversations
      */
+    @EntityGraph(attributePaths = {"customer", "superAdmin", "lastMessage", "lastMessage.sender"})
     @Query("SELECT c FROM Conversation c WHERE c.customer.id = :customerId ORDER BY c.lastMessageAt DESC NULLS LAST")
     Page<Conversation> findByCustomerIdOrderByLastMessageAtDesc(@Param("customerId") Integer customerId,
                                                                 Pageable pageable);
@@ -35,6 +39,7 @@ public interface ConversationRepository extends JpaRepository<Conversation, Inte
      * @param pageable     pagination parameters
      * @return page of conversations
      */
+    @EntityGraph(attributePaths = {"customer", "superAdmin", "lastMessage", "lastMessage.sender"})
     @Query("SELECT c FROM Conversation c WHERE c.superAdmin.id = :superAdminId ORDER BY c.lastMessageAt DESC NULLS LAST")
     Page<Conversation> findBySuperAdminIdOrderByLastMessageAtDesc(@Param("superAdminId") Integer superAdminId,
                                                                   Pageable pageable);
@@ -54,6 +59,7 @@ public interface ConversationRepository extends JpaRepository<Conversation, Inte
      * @param pageable pagination parameters
      * @return page of open conversations
      */
+    @EntityGraph(attributePaths = {"customer", "superAdmin", "lastMessage", "lastMessage.sender"})
     @Query("SELECT c FROM Conversation c WHERE c.status = 'OPEN' AND c.superAdmin IS NULL ORDER BY c.createdAt ASC")
     Page<Conversation> findOpenUnassignedConversations(Pageable pageable);
 
@@ -101,7 +107,126 @@ public interface ConversationRepository extends JpaRepository<Conversation, Inte
      * @param pageable pagination parameters
      * @return page of conversations
      */
+    @EntityGraph(attributePaths = {"customer", "superAdmin", "lastMessage", "lastMessage.sender"})
     @Query("SELECT c FROM Conversation c WHERE c.customer.id = :userId OR c.superAdmin.id = :userId " +
             "ORDER BY c.lastMessageAt DESC NULLS LAST")
     Page<Conversation> findAllByUserId(@Param("userId") Integer userId, Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * Find conversations by ID with participants and the last message.
+     *
+     * @param ids the conversation IDs
+     * @return list of conversations, in no particular order
+     */
+    @EntityGraph(attributePaths = {"customer", "superAdmin", "lastMessage", "lastMessage.sender"})
+    List<Conversation> findAllWithParticipantsByIdIn(Collection<Integer> ids);
+
+    /**
+     * Search the conversations of a user (as customer or admin) by message content and by
+     * the name of the other participants, best match first.
+     * <p>
+     * Message content is matched with {@code websearch_to_tsquery} against
+     * idx_messages_content_tsv and names by trigram word similarity against
+     * idx_users_full_name_trgm. Both scores are brought to [0, 1] before they are combined:
+     * {@code ts_rank_cd} with normalization 32 ({@code rank / (rank + 1)}) and
+     * {@code word_similarity} as is; a conversation ranks by its best hit.
+     * <p>
+     * Results are keyset-paginated on (rank, conversation ID), which keeps slices stable
+     * while messages arrive. Ranks are computed for every hit in the user's conversations
+     * on each slice, so the cost of a slice grows with the number of hits, not with its
+     * position. The rank is returned as {@code real} and compared as {@code real}, so a
+     * cursor rank passed back unchanged matches the row it came from exactly.
+     *
+     * @param userId     the user ID
+     * @param term       the search term
+     * @param cursorRank rank of the last hit of the previous slice, or null for the first slice
+     * @param cursorId   conversation ID of the last hit of the previous slice, or null
+     * @param limit      maximum number of hits
+     * @return hits ordered by rank and conversation ID, descending
+     */
+    @Query(value = "WITH accessible AS (" +
+            "SELECT c.id, c.customer_id, c.super_admin_id FROM chat.conversations c " +
+            "WHERE c.customer_id = :userId OR c.super_admin_id = :userId" +
+            "), message_hits AS (" +
+            "SELECT m.conversation_id, MAX(ts_rank_cd(m.content_tsv, q.query, 32)) AS rank " +
+            "FROM chat.messages m " +
+            "JOIN accessible a ON a.id = m.conversation_id " +
+            "CROSS JOIN websearch_to_tsquery('simple', :term) q(query) " +
+            "WHERE m.message_type <> 'SYSTEM' AND m.content_tsv @@ q.query " +
+            "AND (m.status = 'SENT' OR m.sender_id = :userId) " +
+            "GROUP BY m.conversation_id" +
+            "), name_hits AS (" +
+            "SELECT a.id AS conversation_id, " +
+            "MAX(word_similarity(:term, u.first_name || ' ' || u.last_name)) AS rank " +
+            "FROM accessible a " +
+            "JOIN chat.users u ON u.id = a.customer_id OR u.id = a.super_admin_id " +
+            "WHERE u.id <> :userId AND :term <% (u.first_name || ' ' || u.last_name) " +
+            "GROUP BY a.id" +
+            "), hits AS (" +
+            "SELECT h.conversation_id, CAST(MAX(h.rank) AS real) AS rank FROM (" +
+            "SELECT conversation_id, rank FROM message_hits " +
+            "UNION ALL " +
+            "SELECT conversation_id, rank FROM name_hits" +
+            ") h GROUP BY h.conversation_id" +
+            ") " +
+            "SELECT hits.conversation_id AS \"conversationId\", hits.rank AS \"rank\" FROM hits " +
+            "WHERE CAST(:cursorRank AS real) IS NULL " +
+            "OR (hits.rank, hits.conversation_id) < (CAST(:cursorRank AS real), CAST(:cursorId AS integer)) " +
+            "ORDER BY hits.rank DESC, hits.conversation_id DESC " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<ConversationSearchHit> searchByUserId(@Param("userId") Integer userId,
+                                               @Param("term") String term,
+                                               @Param("cursorRank") Float cursorRank,
+                                               @Param("cursorId") Integer cursorId,
+                                               @Param("limit") int limit);
+
+    /**
+     * Find, for each of the given users, the other users they share a conversation with,
+     * either as customer/super admin or as active participants.
+     *
+     * @param userIds the IDs of the users whose peers are looked up
+     * @return distinct (subject, peer) pairs with the peer's Firebase user ID
+     */
+    @Query(value = "SELECT DISTINCT pairs.subject_id AS \"subjectId\", " +
+            "s.first_name || ' ' || s.last_name AS \"subjectName\", " +
+            "pairs.peer_id AS \"peerId\", p.firebase_user_id AS \"peerFirebaseUserId\" " +
+            "FROM (" +
+            "SELECT c.customer_id AS subject_id, c.super_admin_id AS peer_id FROM chat.conversations c " +
+            "WHERE c.customer_id IN (:userIds) AND c.super_admin_id IS NOT NULL " +
+            "UNION " +
+            "SELECT c.super_admin_id, c.customer_id FROM chat.conversations c " +
+            "WHERE c.super_admin_id IN (:userIds) " +
+            "UNION " +
+            "SELECT cp.user_id, other.user_id FROM chat.conversation_participants cp " +
+            "JOIN chat.conversation_participants other ON other.conversation_id = cp.conversation_id " +
+            "AND other.user_id <> cp.user_id AND other.is_active = TRUE " +
+            "WHERE cp.user_id IN (:userIds) AND cp.is_active = TRUE" +
+            ") pairs " +
+            "JOIN chat.users s ON s.id = pairs.subject_id " +
+            "JOIN chat.users p ON p.id = pairs.peer_id",
+            nativeQuery = true)
+    List<ConversationPeer> findConversationPeers(@Param("userIds") Collection<Integer> userIds);
+
+    /**
+     * A user paired with another user sharing a conversation with them.
+     */
+    interface ConversationPeer {
+        Integer getSubjectId();
+
+        String getSubjectName();
+
+        Integer getPeerId();
+
+        String getPeerFirebaseUserId();
+    }
+
+    /**
+     * A conversation matched by a search, with the rank of its best hit.
+     */
+    interface ConversationSearchHit {
+        Integer getConversationId();
+
+        Float getRank();
+    }
+}
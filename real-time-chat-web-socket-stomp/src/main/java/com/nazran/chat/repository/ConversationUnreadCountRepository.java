@@ -7,6 +7,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -75,10 +77,63 @@ public interface ConversationUnreadCountRepository extends JpaRepository<Convers
             "WHERE cuc.conversation.id = :conversationId AND cuc.user.id = :userId")
     int incrementUnreadCount(@Param("conversationId") Integer conversationId, @Param("userId") Integer userId);
 
+    /**
+     * Advance the read watermark of a user in a conversation.
+     * The watermark only moves forward; an older message ID leaves it unchanged.
+     * Not a {@code @Modifying} query: the upsert returns the stored watermark through
+     * {@code RETURNING}, and no row when the watermark did not move.
+     *
+     * @param conversationId the conversation ID
+     * @param userId         the user ID
+     * @param messageId      the latest message read by the user
+     * @param readAt         the read timestamp
+     * @return the new watermark, or empty if it did not advance
+     */
+    @Query(value = "INSERT INTO chat.conversation_unread_count " +
+            "(conversation_id, user_id, unread_count, last_read_message_id, last_read_at) " +
+            "VALUES (:conversationId, :userId, 0, :messageId, :readAt) " +
+            "ON CONFLICT (conversation_id, user_id) DO UPDATE SET " +
+            "last_read_message_id = EXCLUDED.last_read_message_id, " +
+            "last_read_at = EXCLUDED.last_read_at " +
+            "WHERE chat.conversation_unread_count.last_read_message_id IS NULL " +
+            "OR chat.conversation_unread_count.last_read_message_id < EXCLUDED.last_read_message_id " +
+            "RETURNING last_read_message_id",
+            nativeQuery = true)
+    Optional<Integer> advanceReadWatermark(@Param("conversationId") Integer conversationId,
+                                           @Param("userId") Integer userId,
+                                           @Param("messageId") Integer messageId,
+                                           @Param("readAt") OffsetDateTime readAt);
+
+    /**
+     * Find the read watermarks of all participants of the given conversations.
+     *
+     * @param conversationIds the conversation IDs
+     * @return list of read watermarks
+     */
+    @Query("SELECT cuc.conversation.id AS conversationId, cuc.user.id AS userId, " +
+            "cuc.lastReadMessageId AS lastReadMessageId, cuc.lastReadAt AS lastReadAt " +
+            "FROM ConversationUnreadCount cuc " +
+            "WHERE cuc.conversation.id IN :conversationIds AND cuc.lastReadMessageId IS NOT NULL")
+    List<ReadWatermark> findReadWatermarks(@Param("conversationIds") Collection<Integer> conversationIds);
+
     /**
      * Delete unread count records for a conversation.
      *
      * @param conversationId the conversation ID
      */
     void deleteByConversationId(Integer conversationId);
+
+    /**
+     * Read watermark of one participant of a conversation.
+     */
+    interface ReadWatermark {
+
+        Integer getConversationId();
+
+        Integer getUserId();
+
+        Integer getLastReadMessageId();
+
+        OffsetDateTime getLastReadAt();
+    }
 }
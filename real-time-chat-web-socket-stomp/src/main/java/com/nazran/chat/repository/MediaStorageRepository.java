@@ -2,9 +2,14 @@ package com.nazran.chat.repository;
 
 import com.nazran.chat.entity.MediaStorage;
 import com.nazran.chat.enums.ReferenceType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,6 +37,31 @@ public interface MediaStorageRepository extends JpaRepository<MediaStorage, Inte
      */
     List<MediaStorage> findAllByReferenceIdAndReferenceType(Integer referenceId, ReferenceType referenceType);
 
+    /**
+     * Finds all {@link MediaStorage} entities of a reference type for a batch of reference IDs.
+     *
+     * @param referenceType the type of the reference
+     * @param referenceIds the IDs of the references
+     * @return a list of MediaStorage entries associated with any of the given references
+     */
+    List<MediaStorage> findAllByReferenceTypeAndReferenceIdIn(ReferenceType referenceType, Collection<Integer> referenceIds);
+
+    /**
+     * Finds the attachments of a conversation, newest message first.
+     * Scans media storage through its reference index and joins each row to its message by primary key.
+     *
+     * @param conversationId the conversation ID
+     * @param pageable pagination parameters
+     * @return a page of MediaStorage entries attached to messages of the conversation
+     */
+    @Query(value = "SELECT ms FROM MediaStorage ms JOIN Message m ON m.id = ms.referenceId " +
+            "WHERE ms.referenceType = com.nazran.chat.enums.ReferenceType.CHAT_MESSAGE " +
+            "AND m.conversation.id = :conversationId ORDER BY ms.referenceId DESC, ms.id DESC",
+            countQuery = "SELECT COUNT(ms) FROM MediaStorage ms JOIN Message m ON m.id = ms.referenceId " +
+                    "WHERE ms.referenceType = com.nazran.chat.enums.ReferenceType.CHAT_MESSAGE " +
+                    "AND m.conversation.id = :conversationId")
+    Page<MediaStorage> findConversationAttachments(@Param("conversationId") Integer conversationId, Pageable pageable);
+
     /**
      * Finds a {@link MediaStorage} entity by its external ID.
      *
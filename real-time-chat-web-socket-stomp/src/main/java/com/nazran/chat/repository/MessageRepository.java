@@ -5,13 +5,15 @@ import com.nazran.chat.enums.MessageType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Repository interface for Message entity operations.
@@ -22,82 +24,227 @@ public interface MessageRepository extends JpaRepository<Message, Integer> {
 
     /**
      * Find messages by conversation ID, ordered by creation time descending (latest first).
+     * Sender and conversation are fetched with the page. Pending and failed messages are
+     * only returned to their sender.
      *
      * @param conversationId the conversation ID
+     * @param viewerId       the user reading the conversation
+     * @param pageable       pagination parameters
      * @return page of messages
      */
-    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId ORDER BY m.createdAt DESC")
-    List<Message> findByConversationIdOrderByCreatedAtDesc(@Param("conversationId") Integer conversationId);
+    @Query(value = "SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.conversation " +
+            "WHERE m.conversation.id = :conversationId " +
+            "AND (m.status = com.nazran.chat.enums.MessageStatus.SENT OR m.sender.id = :viewerId) " +
+            "ORDER BY m.createdAt DESC",
+            countQuery = "SELECT COUNT(m) FROM Message m WHERE m.conversation.id = :conversationId " +
+                    "AND (m.status = com.nazran.chat.enums.MessageStatus.SENT OR m.sender.id = :viewerId)")
+    Page<Message> findByConversationIdOrderByCreatedAtDesc(@Param("conversationId") Integer conversationId,
+                                                           @Param("viewerId") Integer viewerId,
+                                                           Pageable pageable);
 
     /**
-     * Find messages by conversation ID, ordered by creation time descending (latest first).
+     * Find the creation time of a message, provided it belongs to the conversation.
      *
+     * @param messageId      the message ID
      * @param conversationId the conversation ID
-     * @param pageable       pagination parameters
-     * @return page of messages
+     * @return Optional containing the creation time if the message exists in the conversation
      */
-    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId ORDER BY m.createdAt DESC")
-    Page<Message> findByConversationIdOrderByCreatedAtDesc(@Param("conversationId") Integer conversationId,
-                                                           Pageable pageable);
+    @Query("SELECT m.createdAt FROM Message m WHERE m.id = :messageId AND m.conversation.id = :conversationId")
+    Optional<OffsetDateTime> findCreatedAtByIdAndConversationId(@Param("messageId") Integer messageId,
+                                                               @Param("conversationId") Integer conversationId);
 
     /**
-     * Find messages by conversation ID, ordered by creation time ascending (oldest first).
+     * Find the latest messages of a conversation, newest first, without a count query.
+     * Ties on creation time are broken by ID. Partitions are read newest first through
+     * idx_messages_conversation_created, so older months are only touched when the newer
+     * ones run out of rows. Pending and failed messages are only returned to their sender.
      *
      * @param conversationId the conversation ID
-     * @param pageable       pagination parameters
-     * @return page of messages
+     * @param viewerId       the user reading the conversation
+     * @param pageable       limit of the slice (offset should be 0)
+     * @return list of messages
      */
-    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId ORDER BY m.createdAt ASC")
-    Page<Message> findByConversationIdOrderByCreatedAtAsc(@Param("conversationId") Integer conversationId,
-                                                          Pageable pageable);
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.conversation WHERE m.conversation.id = :conversationId " +
+            "AND (m.status = com.nazran.chat.enums.MessageStatus.SENT OR m.sender.id = :viewerId) " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findLatestByConversationId(@Param("conversationId") Integer conversationId,
+                                             @Param("viewerId") Integer viewerId,
+                                             Pageable pageable);
 
     /**
-     * Count unread messages in a conversation for a specific user (recipient).
+     * Find messages of a conversation older than the cursor message, newest first.
+     * The range condition on creation time prunes the monthly partitions after the cursor
+     * and is served by idx_messages_conversation_created, the ID condition only breaks ties.
+     * Pending and failed messages are only returned to their sender.
      *
      * @param conversationId the conversation ID
-     * @param senderId       the sender ID to exclude
-     * @return count of unread messages
+     * @param viewerId       the user reading the conversation
+     * @param createdAt      creation time of the cursor message
+     * @param messageId      ID of the cursor message
+     * @param pageable       limit of the slice (offset should be 0)
+     * @return list of messages
      */
-    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation.id = :conversationId " +
-            "AND m.isRead = false AND m.sender.id != :senderId")
-    Long countUnreadByConversationIdAndNotSender(@Param("conversationId") Integer conversationId,
-                                                 @Param("senderId") Integer senderId);
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.conversation WHERE m.conversation.id = :conversationId " +
+            "AND m.createdAt <= :createdAt AND (m.createdAt < :createdAt OR m.id < :messageId) " +
+            "AND (m.status = com.nazran.chat.enums.MessageStatus.SENT OR m.sender.id = :viewerId) " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findBeforeCursor(@Param("conversationId") Integer conversationId,
+                                   @Param("viewerId") Integer viewerId,
+                                   @Param("createdAt") OffsetDateTime createdAt,
+                                   @Param("messageId") Integer messageId,
+                                   Pageable pageable);
 
     /**
-     * Find unread messages in a conversation for a specific user.
+     * Find messages of a conversation newer than the cursor message, oldest first.
+     * Partitions before the month of the cursor are pruned. Pending and failed messages are
+     * only returned to their sender.
      *
      * @param conversationId the conversation ID
-     * @param senderId       the sender ID to exclude
-     * @return list of unread messages
+     * @param viewerId       the user reading the conversation
+     * @param createdAt      creation time of the cursor message
+     * @param messageId      ID of the cursor message
+     * @param pageable       limit of the slice (offset should be 0)
+     * @return list of messages
      */
-    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId " +
-            "AND m.isRead = false AND m.sender.id != :senderId ORDER BY m.createdAt ASC")
-    List<Message> findUnreadByConversationIdAndNotSender(@Param("conversationId") Integer conversationId,
-                                                         @Param("senderId") Integer senderId);
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.conversation WHERE m.conversation.id = :conversationId " +
+            "AND m.createdAt >= :createdAt AND (m.createdAt > :createdAt OR m.id > :messageId) " +
+            "AND (m.status = com.nazran.chat.enums.MessageStatus.SENT OR m.sender.id = :viewerId) " +
+            "ORDER BY m.createdAt ASC, m.id ASC")
+    List<Message> findAfterCursor(@Param("conversationId") Integer conversationId,
+                                  @Param("viewerId") Integer viewerId,
+                                  @Param("createdAt") OffsetDateTime createdAt,
+                                  @Param("messageId") Integer messageId,
+                                  Pageable pageable);
 
     /**
-     * Mark all messages in a conversation as read for a specific recipient.
+     * Find, for a batch of conversations, the IDs of the messages after the last message seen
+     * in each, oldest first. Each conversation is one range scan of
+     * idx_messages_conversation_created starting at its last seen message, capped at
+     * {@code limit} rows. Conversations whose last seen message exists come back with at least
+     * one row, carrying a null message ID when nothing was missed. Pending and failed messages
+     * are only returned to their sender.
+     *
+     * @param conversationIds    the conversation IDs
+     * @param lastSeenMessageIds the last seen message ID of each conversation, in the same order
+     * @param viewerId           the user reading the conversations
+     * @param limit              maximum number of messages per conversation
+     * @return missed message IDs per conversation, ordered by conversation and creation time
+     */
+    @Query(value = "WITH seen AS (" +
+            "SELECT s.conversation_id, s.message_id, m.created_at " +
+            "FROM unnest(ARRAY[:conversationIds], ARRAY[:lastSeenMessageIds]) AS s(conversation_id, message_id) " +
+            "JOIN chat.messages m ON m.id = s.message_id AND m.conversation_id = s.conversation_id" +
+            ") " +
+            "SELECT seen.conversation_id AS \"conversationId\", missed.id AS \"messageId\" FROM seen " +
+            "LEFT JOIN LATERAL (" +
+            "SELECT m.id, m.created_at FROM chat.messages m " +
+            "WHERE m.conversation_id = seen.conversation_id AND m.created_at >= seen.created_at " +
+            "AND (m.created_at > seen.created_at OR m.id > seen.message_id) " +
+            "AND (m.status = 'SENT' OR m.sender_id = :viewerId) " +
+            "ORDER BY m.created_at, m.id " +
+            "LIMIT :limit" +
+            ") missed ON TRUE " +
+            "ORDER BY seen.conversation_id, missed.created_at, missed.id",
+            nativeQuery = true)
+    List<ConversationMessageId> findMissedMessageIds(@Param("conversationIds") List<Integer> conversationIds,
+                                                     @Param("lastSeenMessageIds") List<Integer> lastSeenMessageIds,
+                                                     @Param("viewerId") Integer viewerId,
+                                                     @Param("limit") int limit);
+
+    /**
+     * Find, for a batch of conversations, the IDs of messages up to the last seen one that were
+     * deleted after it was sent. Each conversation is one range scan of the partial index
+     * idx_messages_deleted, which holds deleted messages only.
+     *
+     * @param conversationIds    the conversation IDs
+     * @param lastSeenMessageIds the last seen message ID of each conversation, in the same order
+     * @param viewerId           the user reading the conversations
+     * @return deleted message IDs per conversation
+     */
+    @Query(value = "WITH seen AS (" +
+            "SELECT s.conversation_id, s.message_id, m.created_at " +
+            "FROM unnest(ARRAY[:conversationIds], ARRAY[:lastSeenMessageIds]) AS s(conversation_id, message_id) " +
+            "JOIN chat.messages m ON m.id = s.message_id AND m.conversation_id = s.conversation_id" +
+            ") " +
+            "SELECT m.conversation_id AS \"conversationId\", m.id AS \"messageId\" FROM seen " +
+            "JOIN chat.messages m ON m.conversation_id = seen.conversation_id " +
+            "AND m.deleted_at > seen.created_at AND m.id <= seen.message_id " +
+            "WHERE m.status = 'SENT' OR m.sender_id = :viewerId",
+            nativeQuery = true)
+    List<ConversationMessageId> findDeletedMessageIds(@Param("conversationIds") List<Integer> conversationIds,
+                                                      @Param("lastSeenMessageIds") List<Integer> lastSeenMessageIds,
+                                                      @Param("viewerId") Integer viewerId);
+
+    /**
+     * Find messages by ID with their sender and conversation, oldest first.
+     *
+     * @param ids the message IDs
+     * @return list of messages
+     */
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.conversation WHERE m.id IN :ids " +
+            "ORDER BY m.createdAt ASC, m.id ASC")
+    List<Message> findAllWithSenderByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Find the IDs of messages still PENDING that were created before a point in time.
+     * Served by the partial index idx_messages_pending.
+     *
+     * @param createdBefore only messages created before this time are returned
+     * @return IDs of the pending messages
+     */
+    @Query("SELECT m.id FROM Message m WHERE m.status = com.nazran.chat.enums.MessageStatus.PENDING " +
+            "AND m.createdAt < :createdBefore")
+    List<Integer> findPendingIdsCreatedBefore(@Param("createdBefore") OffsetDateTime createdBefore);
+
+    /**
+     * Find the IDs of messages left PENDING by earlier runs of an instance, whose uploads
+     * were lost when those runs stopped. Messages of other instances are not returned.
+     * Served by the partial index idx_messages_pending.
+     *
+     * @param instanceId the instance ID
+     * @param runId      the current run of the instance, whose messages are not returned
+     * @return IDs of the pending messages
+     */
+    @Query("SELECT m.id FROM Message m WHERE m.status = com.nazran.chat.enums.MessageStatus.PENDING " +
+            "AND m.uploadInstanceId = :instanceId AND m.uploadRunId <> :runId")
+    List<Integer> findPendingIdsOfEarlierRuns(@Param("instanceId") String instanceId,
+                                              @Param("runId") UUID runId);
+
+    /**
+     * Find messages by conversation ID, ordered by creation time ascending (oldest first).
+     *
+     * @param conversationId the conversation ID
+     * @param pageable       pagination parameters
+     * @return page of messages
+     */
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId ORDER BY m.createdAt ASC")
+    Page<Message> findByConversationIdOrderByCreatedAtAsc(@Param("conversationId") Integer conversationId,
+                                                          Pageable pageable);
+
+    /**
+     * Count sent messages of other participants after a read watermark.
      *
      * @param conversationId the conversation ID
-     * @param senderId       the sender ID to exclude (messages sent by this user won't be marked)
-     * @param readAt         the read timestamp
-     * @return number of messages updated
+     * @param userId         the reading user, whose own messages are excluded
+     * @param messageId      the read watermark
+     * @return count of unread messages
      */
-    @Modifying
-    @Query("UPDATE Message m SET m.isRead = true, m.readAt = :readAt " +
-            "WHERE m.conversation.id = :conversationId AND m.sender.id != :senderId AND m.isRead = false")
-    int markAllAsReadInConversation(@Param("conversationId") Integer conversationId,
-                                    @Param("senderId") Integer senderId,
-                                    @Param("readAt") OffsetDateTime readAt);
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation.id = :conversationId " +
+            "AND m.sender.id <> :userId AND m.id > :messageId " +
+            "AND m.messageType <> com.nazran.chat.enums.MessageType.SYSTEM " +
+            "AND m.status = com.nazran.chat.enums.MessageStatus.SENT")
+    long countUnreadAfterWatermark(@Param("conversationId") Integer conversationId,
+                                   @Param("userId") Integer userId,
+                                   @Param("messageId") Integer messageId);
 
     /**
-     * Find the last message in a conversation.
+     * Check whether a message belongs to a conversation.
      *
+     * @param id             the message ID
      * @param conversationId the conversation ID
-     * @return the last message or null if no messages exist
+     * @return true if the message exists in the conversation
      */
-    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId ORDER BY m.createdAt DESC")
-    List<Message> findLastMessageByConversationId(@Param("conversationId") Integer conversationId);
+    boolean existsByIdAndConversationId(Integer id, Integer conversationId);
 
     /**
      * Find messages by type in a conversation.
@@ -130,4 +277,13 @@ public interface MessageRepository extends JpaRepository<Message, Integer> {
     Page<Message> findByConversationIdAndSenderId(Integer conversationId,
                                                   Integer senderId,
                                                   Pageable pageable);
+
+    /**
+     * A message ID within a conversation.
+     */
+    interface ConversationMessageId {
+        Integer getConversationId();
+
+        Integer getMessageId();
+    }
 }
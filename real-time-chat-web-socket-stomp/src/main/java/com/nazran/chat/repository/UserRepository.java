@@ -3,8 +3,10 @@ package com.nazran.chat.repository;
 import com.nazran.chat.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +24,24 @@ public interface UserRepository extends JpaRepository<User, Integer> {
      */
     Optional<User> findByFirebaseUserId(String firebaseUserId);
 
+    /**
+     * Find a user by Firebase user ID with roles fetched in the same query.
+     *
+     * @param firebaseUserId the Firebase user ID
+     * @return Optional containing the user if found
+     */
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.firebaseUserId = :firebaseUserId")
+    Optional<User> findWithRolesByFirebaseUserId(@Param("firebaseUserId") String firebaseUserId);
+
+    /**
+     * Find users by ID with roles fetched in the same query.
+     *
+     * @param ids the user IDs
+     * @return list of users with initialized roles
+     */
+    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE u.id IN :ids")
+    List<User> findAllWithRolesByIdIn(@Param("ids") Collection<Integer> ids);
+
     /**
      * Find a user by email.
      *
@@ -37,4 +57,12 @@ public interface UserRepository extends JpaRepository<User, Integer> {
      */
     @Query("SELECT DISTINCT u FROM User u JOIN u.roles r WHERE r.name = 'SUPER_ADMIN' AND u.status = 'ACTIVE'")
     List<User> findAllActiveSuperAdmins();
+
+    /**
+     * Find the IDs of all super admins who are active.
+     *
+     * @return list of active super admin IDs
+     */
+    @Query("SELECT DISTINCT u.id FROM User u JOIN u.roles r WHERE r.name = 'SUPER_ADMIN' AND u.status = 'ACTIVE'")
+    List<Integer> findActiveSuperAdminIds();
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.nazran.chat.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes authentication error bodies with a single, preconfigured JSON writer
+ * instead of a new {@link ObjectMapper} per failed request.
+ */
+@Component
+public class AuthErrorResponseWriter {
+
+    private final ObjectWriter writer;
+
+    public AuthErrorResponseWriter(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writerFor(Map.class);
+    }
+
+    /**
+     * Writes a 401 Unauthorized JSON response.
+     *
+     * @param response the HTTP response
+     * @param body     the response body
+     * @throws IOException if the response cannot be written
+     */
+    public void writeUnauthorized(HttpServletResponse response, Map<String, Object> body) throws IOException {
+        response.setContentType("application/json");
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        writer.writeValue(response.getOutputStream(), body);
+    }
+}
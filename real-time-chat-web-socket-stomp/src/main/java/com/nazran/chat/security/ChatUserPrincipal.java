@@ -0,0 +1,57 @@
+package com.nazran.chat.security;
+
+import lombok.Getter;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.security.Principal;
+import java.util.Set;
+
+/**
+ * Authenticated chat user bound to a STOMP session at CONNECT time.
+ * <p>
+ * The name of the principal is the Firebase UID so that user destinations
+ * ({@code /user/{firebaseUserId}/queue/...}) keep resolving to the same sessions,
+ * while the resolved database id, roles and display name are available to
+ * {@code @MessageMapping} handlers without any per-frame lookup.
+ */
+@Getter
+public class ChatUserPrincipal implements Principal, Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Session attribute key holding the resolved chat user ID.
+     */
+    public static final String USER_ID_ATTRIBUTE = "chat.userId";
+
+    /**
+     * Session attribute key holding the bound {@link ChatUserPrincipal}.
+     */
+    public static final String PRINCIPAL_ATTRIBUTE = "chat.principal";
+
+    private final Integer userId;
+    private final String firebaseUserId;
+    private final String displayName;
+    private final Set<String> roles;
+
+    public ChatUserPrincipal(Integer userId, String firebaseUserId, String displayName, Set<String> roles) {
+        this.userId = userId;
+        this.firebaseUserId = firebaseUserId;
+        this.displayName = displayName;
+        this.roles = Set.copyOf(roles);
+    }
+
+    @Override
+    public String getName() {
+        return firebaseUserId;
+    }
+
+    /**
+     * Returns whether the user holds the {@code SUPER_ADMIN} role.
+     */
+    public boolean isSuperAdmin() {
+        return roles.contains("SUPER_ADMIN");
+    }
+}
@@ -1,9 +1,9 @@
 package com.nazran.chat.security;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nazran.chat.utils.ResponseStatus;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.AuthenticationException;
@@ -15,19 +15,19 @@ import java.util.HashMap;
 import java.util.Map;
 
 @Component
+@RequiredArgsConstructor
 public class CustomAuthEntryPoint implements AuthenticationEntryPoint {
 
     private static final Logger logger = LoggerFactory.getLogger(CustomAuthEntryPoint.class);
 
+    private final AuthErrorResponseWriter authErrorResponseWriter;
+
     @Override
     public void commence(HttpServletRequest request, HttpServletResponse response,
                          AuthenticationException authException) throws IOException {
         logger.warn("Unauthorized access attempt: {} {} from IP: {}",
                 request.getMethod(), request.getRequestURI(), request.getRemoteAddr());
 
-        response.setContentType("application/json");
-        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-
         Map<String, Object> responseBody = new HashMap<>();
         responseBody.put("status", ResponseStatus.ERROR);
         responseBody.put("message", "Authentication failed");
@@ -35,7 +35,6 @@ public class CustomAuthEntryPoint implements AuthenticationEntryPoint {
         responseBody.put("path", request.getRequestURI());
         responseBody.put("method", request.getMethod());
 
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.writeValue(response.getOutputStream(), responseBody);
+        authErrorResponseWriter.writeUnauthorized(response, responseBody);
     }
 }
\ No newline at end of file
@@ -1,15 +1,13 @@
 package com.nazran.chat.security;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthException;
-import com.google.firebase.auth.FirebaseToken;
 import com.nazran.chat.utils.ResponseStatus;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -25,13 +23,17 @@ import java.util.Map;
 /**
  * Custom authentication filter for Firebase JWT token verification.
  * This filter intercepts incoming requests and validates Firebase ID tokens
- * in the Authorization header.
+ * in the Authorization header. Verified tokens are cached until they expire.
  */
 @Component
+@RequiredArgsConstructor
 public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(FirebaseAuthenticationFilter.class);
 
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final AuthErrorResponseWriter authErrorResponseWriter;
+
     /**
      * Processes each HTTP request to verify Firebase authentication token.
      *
@@ -64,12 +66,11 @@ public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
         }
 
         if (token != null) {
-            logger.info("Verifying Firebase token for request: {}", request.getRequestURI());
+            logger.debug("Verifying Firebase token for request: {}", request.getRequestURI());
 
             try {
-                FirebaseToken decodedToken = FirebaseAuth.getInstance().verifyIdToken(token);
-                String uid = decodedToken.getUid();
-                logger.info("Token successfully verified for user: {}", uid);
+                String uid = verifiedTokenCache.verify(token);
+                logger.debug("Token successfully verified for user: {}", uid);
 
                 // Set Authentication for Spring Security context
                 UsernamePasswordAuthenticationToken authentication =
@@ -78,16 +79,12 @@ public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
             } catch (FirebaseAuthException e) {
                 logger.error("Token verification failed: {}", e.getMessage());
 
-                response.setContentType("application/json");
-                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-
                 Map<String, Object> responseBody = new HashMap<>();
                 responseBody.put("status", ResponseStatus.ERROR);
                 responseBody.put("message", "Invalid token");
                 responseBody.put("errors", e.getMessage());
 
-                ObjectMapper mapper = new ObjectMapper();
-                mapper.writeValue(response.getOutputStream(), responseBody);
+                authErrorResponseWriter.writeUnauthorized(response, responseBody);
                 return;
             }
         }
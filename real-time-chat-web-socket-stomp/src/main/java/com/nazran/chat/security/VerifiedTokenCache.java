@@ -0,0 +1,126 @@
+package com.nazran.chat.security;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.FirebaseToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded cache of verified Firebase ID tokens.
+ * <p>
+ * Verifying an ID token means an RSA signature check and claim parsing. Clients send the
+ * same token with every request until it expires, so the outcome is cached under the
+ * SHA-256 hash of the token (the raw token is never kept) until the token's {@code exp}.
+ * Hits and misses are exposed as {@code chat.auth.token.cache} counters.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(VerifiedTokenCache.class);
+
+    private final FirebaseAuth firebaseAuth;
+    private final Counter hits;
+    private final Counter misses;
+    private final ConcurrentMap<String, VerifiedToken> tokens = new ConcurrentHashMap<>();
+
+    @Value("${chat.auth.token-cache.max-size:10000}")
+    private int maxSize;
+
+    public VerifiedTokenCache(FirebaseAuth firebaseAuth, MeterRegistry meterRegistry) {
+        this.firebaseAuth = firebaseAuth;
+        this.hits = Counter.builder("chat.auth.token.cache")
+                .tag("result", "hit")
+                .description("ID token verifications served from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("chat.auth.token.cache")
+                .tag("result", "miss")
+                .description("ID token verifications performed against Firebase")
+                .register(meterRegistry);
+        meterRegistry.gauge("chat.auth.token.cache.size", tokens, ConcurrentMap::size);
+    }
+
+    /**
+     * Verifies an ID token, using the cached result while the token has not expired.
+     *
+     * @param token the Firebase ID token
+     * @return the Firebase UID of the token
+     * @throws FirebaseAuthException if the token is invalid
+     */
+    public String verify(String token) throws FirebaseAuthException {
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+
+        VerifiedToken cached = tokens.get(key);
+        if (cached != null && cached.expiresAtMillis() > now) {
+            hits.increment();
+            return cached.uid();
+        }
+
+        misses.increment();
+        FirebaseToken decodedToken = firebaseAuth.verifyIdToken(token);
+
+        Object exp = decodedToken.getClaims().get("exp");
+        if (exp instanceof Number expSeconds) {
+            long expiresAtMillis = expSeconds.longValue() * 1000;
+            if (expiresAtMillis > now && ensureCapacity(now)) {
+                tokens.put(key, new VerifiedToken(decodedToken.getUid(), expiresAtMillis));
+            }
+        }
+        return decodedToken.getUid();
+    }
+
+    /**
+     * Drops expired tokens.
+     */
+    @Scheduled(fixedDelayString = "${chat.auth.token-cache.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        tokens.values().removeIf(token -> token.expiresAtMillis() <= now);
+    }
+
+    /**
+     * Makes room for one more token: expired tokens are dropped first, then arbitrary ones.
+     *
+     * @return false if the cache is still full
+     */
+    private boolean ensureCapacity(long now) {
+        if (tokens.size() < maxSize) {
+            return true;
+        }
+
+        purgeExpired();
+        Iterator<String> iterator = tokens.keySet().iterator();
+        while (tokens.size() >= maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        logger.debug("Verified token cache full, evicted entries at {}", now);
+        return tokens.size() < maxSize;
+    }
+
+    private String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record VerifiedToken(String uid, long expiresAtMillis) {
+    }
+}
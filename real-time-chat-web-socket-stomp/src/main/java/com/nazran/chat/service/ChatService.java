@@ -3,10 +3,14 @@ package com.nazran.chat.service;
 import com.nazran.chat.dto.request.AssignConversationRequest;
 import com.nazran.chat.dto.request.CreateConversationRequest;
 import com.nazran.chat.dto.request.MarkAsReadRequest;
+import com.nazran.chat.dto.request.ResyncRequest;
 import com.nazran.chat.dto.request.SendMessageRequest;
 import com.nazran.chat.dto.response.ChatStatsResponse;
 import com.nazran.chat.dto.response.ConversationResponse;
+import com.nazran.chat.dto.response.ConversationSearchResponse;
+import com.nazran.chat.dto.response.MessageHistoryResponse;
 import com.nazran.chat.dto.response.MessageResponse;
+import com.nazran.chat.dto.response.ResyncResponse;
 import com.nazran.chat.dto.response.UnreadCountResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -89,6 +93,32 @@ public interface ChatService {
      */
     Page<MessageResponse> getConversationMessages(Integer conversationId, Integer authenticatedUserId, Pageable pageable);
 
+    /**
+     * Get messages in a conversation using keyset (cursor) pagination.
+     * At most one of {@code before} and {@code after} may be given; with neither,
+     * the latest messages are returned.
+     *
+     * @param conversationId      the conversation ID
+     * @param authenticatedUserId the ID of the authenticated user
+     * @param before              return messages older than this message ID
+     * @param after               return messages newer than this message ID
+     * @param limit               maximum number of messages to return
+     * @return slice of messages, newest first, with cursors for the adjacent slices
+     */
+    MessageHistoryResponse getConversationMessageHistory(Integer conversationId, Integer authenticatedUserId,
+                                                         Integer before, Integer after, int limit);
+
+    /**
+     * Collect the changes a reconnecting client missed: messages after its last seen message,
+     * deletions of earlier messages and the current read receipts of the other participants.
+     * Conversations whose gap exceeds the resync cap are returned with a reload hint.
+     *
+     * @param request             the last seen message ID per conversation
+     * @param authenticatedUserId the ID of the authenticated user
+     * @return missed changes, per conversation
+     */
+    ResyncResponse resync(ResyncRequest request, Integer authenticatedUserId);
+
     /**
      * Mark messages as read in a conversation.
      *
@@ -115,14 +145,19 @@ public interface ChatService {
     UnreadCountResponse getConversationUnreadCount(Integer conversationId, Integer userId);
 
     /**
-     * Search conversations by content or participant name.
+     * Search the user's conversations by message content or participant name, best match first.
+     * With neither cursor value the first slice is returned; otherwise pass the cursor of the
+     * previous slice.
      *
      * @param userId     the user ID
      * @param searchTerm the search term
-     * @param pageable   pagination parameters
-     * @return paginated list of matching conversations
+     * @param cursorRank rank cursor of the previous slice
+     * @param cursorId   conversation ID cursor of the previous slice
+     * @param limit      maximum number of conversations
+     * @return slice of matching conversations with the cursor of the next slice
      */
-    Page<ConversationResponse> searchConversations(Integer userId, String searchTerm, Pageable pageable);
+    ConversationSearchResponse searchConversations(Integer userId, String searchTerm,
+                                                   Float cursorRank, Integer cursorId, int limit);
 
     /**
      * Get chat statistics for dashboard.
@@ -2,6 +2,7 @@ package com.nazran.chat.service;
 
 import com.nazran.chat.dto.response.MediaStorageResponse;
 import com.nazran.chat.enums.ReferenceType;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -20,6 +21,19 @@ public interface FirebaseStorageService {
      */
     void uploadFile(MultipartFile file, Integer ownerId, ReferenceType referenceType, Integer referenceId) throws IOException;
 
+    /**
+     * Uploads content that is not bound to a request, e.g. a spooled temporary file, to Firebase Storage.
+     *
+     * @param content          The content to upload.
+     * @param originalFilename The original file name, used for the file extension.
+     * @param mimeType         The MIME type of the content.
+     * @param referenceType    The type of entity the file is associated with.
+     * @param referenceId      The unique identifier of the entity instance the file belongs to.
+     * @throws IOException If an error occurs during file upload.
+     */
+    void uploadFile(InputStreamSource content, String originalFilename, String mimeType, Integer ownerId,
+                    ReferenceType referenceType, Integer referenceId) throws IOException;
+
     /**
      * Deletes all media files associated with a given reference ID and reference type.
      *
@@ -2,9 +2,13 @@ package com.nazran.chat.service;
 
 import com.nazran.chat.dto.response.MessageAttachmentResponse;
 import com.nazran.chat.dto.response.MessageResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service interface for message-related operations.
@@ -22,13 +26,22 @@ public interface MessageService {
     MessageResponse sendMessageWithAttachment(Integer conversationId, MultipartFile file, String caption, Integer authenticatedUserId);
 
     /**
-     * Get all attachments in a conversation.
+     * Get attachments in a conversation, newest first.
      *
      * @param conversationId the conversation ID
      * @param authenticatedUserId the ID of the authenticated user
-     * @return list of attachments
+     * @param pageable pagination parameters
+     * @return paginated attachments
      */
-    List<MessageAttachmentResponse> getConversationAttachments(Integer conversationId, Integer authenticatedUserId);
+    Page<MessageAttachmentResponse> getConversationAttachments(Integer conversationId, Integer authenticatedUserId, Pageable pageable);
+
+    /**
+     * Get the attachments of a batch of messages with a single query.
+     *
+     * @param messageIds the message IDs
+     * @return attachments by message ID; messages without attachments are omitted
+     */
+    Map<Integer, List<MessageAttachmentResponse>> getAttachmentsByMessageIds(Collection<Integer> messageIds);
 
     /**
      * Delete a message (soft delete or mark as deleted).
@@ -2,7 +2,9 @@ package com.nazran.chat.service;
 
 import com.nazran.chat.dto.response.UserPresenceResponse;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface UserPresenceService {
 
@@ -23,6 +25,15 @@ public interface UserPresenceService {
      */
     UserPresenceResponse getUserPresence(Integer userId);
 
+    /**
+     * Get presence status of several users at once.
+     * Users without a presence record are reported as offline.
+     *
+     * @param userIds the user IDs
+     * @return presence status keyed by user ID
+     */
+    Map<Integer, UserPresenceResponse> getUserPresences(Collection<Integer> userIds);
+
     /**
      * Get all online users.
      *
@@ -37,6 +48,14 @@ public interface UserPresenceService {
      */
     List<UserPresenceResponse> getOnlineSuperAdmins();
 
+    /**
+     * Check whether a user is currently online.
+     *
+     * @param userId the user ID
+     * @return true if the user is online
+     */
+    boolean isUserOnline(Integer userId);
+
     /**
      * Mark user as offline (called on disconnect).
      *
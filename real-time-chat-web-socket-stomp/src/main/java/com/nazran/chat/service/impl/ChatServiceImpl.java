@@ -3,28 +3,44 @@ package com.nazran.chat.service.impl;
 import com.nazran.chat.dto.request.AssignConversationRequest;
 import com.nazran.chat.dto.request.CreateConversationRequest;
 import com.nazran.chat.dto.request.MarkAsReadRequest;
+import com.nazran.chat.dto.request.ResyncRequest;
 import com.nazran.chat.dto.request.SendMessageRequest;
 import com.nazran.chat.dto.response.*;
 import com.nazran.chat.entity.*;
+import com.nazran.chat.dto.websocket.ReadReceiptDto;
 import com.nazran.chat.enums.ConversationStatus;
 import com.nazran.chat.enums.MessageType;
+import com.nazran.chat.event.MessageSentEvent;
 import com.nazran.chat.exception.CustomMessagePresentException;
-import com.nazran.chat.repository.ConversationRepository;
+import com.nazran.chat.realtime.ChatStatistics;
+import com.nazran.chat.realtime.ConnectedAdminRegistry;
+import com.nazran.chat.realtime.EncodedPayload;
+import com.nazran.chat.realtime.OutboundPayloadCache;
+import com.nazran.chat.realtime.UnreadCountRegistry;
 import com.nazran.chat.repository.ConversationUnreadCountRepository;
+import com.nazran.chat.repository.ConversationUnreadCountRepository.ReadWatermark;
+import com.nazran.chat.repository.ConversationRepository;
 import com.nazran.chat.repository.MessageRepository;
 import com.nazran.chat.repository.UserRepository;
 import com.nazran.chat.service.ChatService;
+import com.nazran.chat.service.MessageService;
 import com.nazran.chat.service.UserPresenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -37,12 +53,26 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ChatServiceImpl implements ChatService {
 
+    private static final int MAX_HISTORY_LIMIT = 100;
+    private static final int MAX_SEARCH_LIMIT = 50;
+    private static final int MAX_SEARCH_TERM_LENGTH = 200;
+    private static final int MAX_RESYNC_CONVERSATIONS = 100;
+    private static final int MAX_RESYNC_MESSAGES = 200;
+    private static final String UNREAD_COUNT_FIELD = "unreadCount";
+
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
     private final UserRepository chatUserRepository;
     private final ConversationUnreadCountRepository unreadCountRepository;
+    private final UnreadCountRegistry unreadCountRegistry;
+    private final ChatStatistics chatStatistics;
+    private final ConversationLastMessageUpdater lastMessageUpdater;
+    private final ConnectedAdminRegistry connectedAdminRegistry;
+    private final OutboundPayloadCache outboundPayloadCache;
     private final UserPresenceService userPresenceService;
+    private final MessageService messageService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -82,16 +112,20 @@ public class ChatServiceImpl implements ChatService {
         initialMessage.setMessageType(MessageType.TEXT);
         initialMessage = messageRepository.save(initialMessage);
 
-        // Initialize unread count for future admin
-        conversation.setLastMessageAt(initialMessage.getCreatedAt());
+        lastMessageUpdater.update(conversation, initialMessage);
         conversationRepository.save(conversation);
 
+        chatStatistics.recordConversationCreated();
+        chatStatistics.recordMessages(1);
+
         log.info("Conversation created successfully with ID: {}", conversation.getId());
 
-        // Notify all online super admins about new conversation
-        notifyAvailableSuperAdmins(conversation);
+        ConversationResponse response = mapToConversationResponse(conversation, customer.getId());
 
-        return mapToConversationResponse(conversation, customer.getId());
+        // Notify the connected super admins about the new conversation
+        notifyAvailableSuperAdmins(response);
+
+        return response;
     }
 
     @Override
@@ -113,7 +147,7 @@ public class ChatServiceImpl implements ChatService {
             conversations = conversationRepository.findByCustomerIdOrderByLastMessageAtDesc(userId, pageable);
         }
 
-        return conversations.map(conv -> mapToConversationResponse(conv, userId));
+        return mapToConversationResponsePage(conversations, userId);
     }
 
     @Override
@@ -150,16 +184,15 @@ public class ChatServiceImpl implements ChatService {
             throw new CustomMessagePresentException("User is not a super admin");
         }
 
+        ConversationStatus previousStatus = conversation.getStatus();
+        boolean wasUnassigned = isUnassignedOpen(conversation);
+        User previousSuperAdmin = conversation.getSuperAdmin();
+
         conversation.setSuperAdmin(superAdmin);
         conversation.setStatus(ConversationStatus.ASSIGNED);
         conversation = conversationRepository.save(conversation);
 
-        // Initialize unread count for super admin
-        ConversationUnreadCount unreadCount = new ConversationUnreadCount();
-        unreadCount.setConversation(conversation);
-        unreadCount.setUser(superAdmin);
-        unreadCount.setUnreadCount(0);
-        unreadCountRepository.save(unreadCount);
+        seedAssignedUnreadCount(conversation.getId(), superAdmin.getId(), previousSuperAdmin);
 
         // Send system message
         Message systemMessage = new Message();
@@ -167,8 +200,13 @@ public class ChatServiceImpl implements ChatService {
         systemMessage.setSender(superAdmin);
         systemMessage.setContent("Conversation assigned to " + superAdmin.getFirstName() + " " + superAdmin.getLastName());
         systemMessage.setMessageType(MessageType.SYSTEM);
-        systemMessage.setIsRead(true);
-        messageRepository.save(systemMessage);
+        systemMessage = messageRepository.save(systemMessage);
+
+        lastMessageUpdater.update(conversation, systemMessage);
+        conversation = conversationRepository.save(conversation);
+
+        chatStatistics.recordStatusChange(previousStatus, wasUnassigned, ConversationStatus.ASSIGNED, false);
+        chatStatistics.recordMessages(1);
 
         log.info("Conversation assigned successfully");
 
@@ -188,6 +226,9 @@ public class ChatServiceImpl implements ChatService {
 
         validateConversationAccess(conversation, authenticatedUserId);
 
+        ConversationStatus previousStatus = conversation.getStatus();
+        boolean wasUnassigned = isUnassignedOpen(conversation);
+
         conversation.setStatus(ConversationStatus.CLOSED);
         conversation = conversationRepository.save(conversation);
 
@@ -200,8 +241,13 @@ public class ChatServiceImpl implements ChatService {
         systemMessage.setSender(user);
         systemMessage.setContent("Conversation closed by " + user.getFirstName() + " " + user.getLastName());
         systemMessage.setMessageType(MessageType.SYSTEM);
-        systemMessage.setIsRead(true);
-        messageRepository.save(systemMessage);
+        systemMessage = messageRepository.save(systemMessage);
+
+        lastMessageUpdater.update(conversation, systemMessage);
+        conversation = conversationRepository.save(conversation);
+
+        chatStatistics.recordStatusChange(previousStatus, wasUnassigned, ConversationStatus.CLOSED, false);
+        chatStatistics.recordMessages(1);
 
         log.info("Conversation closed successfully");
 
@@ -214,7 +260,7 @@ public class ChatServiceImpl implements ChatService {
         log.info("Fetching unassigned conversations");
 
         Page<Conversation> conversations = conversationRepository.findOpenUnassignedConversations(pageable);
-        return conversations.map(conv -> mapToConversationResponse(conv, null));
+        return mapToConversationResponsePage(conversations, null);
     }
 
     @Override
@@ -236,19 +282,23 @@ public class ChatServiceImpl implements ChatService {
         message.setSender(sender);
         message.setContent(request.getContent());
         message.setMessageType(request.getMessageType());
-        message.setIsRead(false);
         message = messageRepository.save(message);
 
-        // Update conversation last message timestamp
-        conversation.setLastMessageAt(message.getCreatedAt());
+        // Update conversation last message pointer
+        lastMessageUpdater.update(conversation, message);
         conversationRepository.save(conversation);
 
+        chatStatistics.recordMessages(1);
+
         log.info("Message sent successfully with ID: {}", message.getId());
 
-        // Broadcast message via WebSocket
-        broadcastMessage(message);
+        MessageResponse response = mapToMessageResponse(message, ReadWatermarks.empty(), Map.of());
 
-        return mapToMessageResponse(message);
+        // Broadcast message via WebSocket once the transaction has committed
+        eventPublisher.publishEvent(new MessageSentEvent(
+                conversation.getId(), response, resolveRecipientIds(conversation, authenticatedUserId)));
+
+        return response;
     }
 
     @Override
@@ -261,8 +311,174 @@ public class ChatServiceImpl implements ChatService {
 
         validateConversationAccess(conversation, authenticatedUserId);
 
-        Page<Message> messages = messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable);
-        return messages.map(this::mapToMessageResponse);
+        Page<Message> messages = messageRepository.findByConversationIdOrderByCreatedAtDesc(
+                conversationId, authenticatedUserId, pageable);
+        ReadWatermarks watermarks = loadReadWatermarks(List.of(conversationId));
+        Map<Integer, List<MessageAttachmentResponse>> attachments = loadAttachments(messages.getContent());
+        return messages.map(message -> mapToMessageResponse(message, watermarks, attachments));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MessageHistoryResponse getConversationMessageHistory(Integer conversationId, Integer authenticatedUserId,
+                                                                Integer before, Integer after, int limit) {
+        log.info("Fetching message history for conversation ID: {} (before: {}, after: {})",
+                conversationId, before, after);
+
+        if (before != null && after != null) {
+            throw new CustomMessagePresentException("Only one of before and after can be provided");
+        }
+
+        Conversation conversation = conversationRepository.findById(conversationId)
+                .orElseThrow(() -> new CustomMessagePresentException("Conversation not found"));
+
+        validateConversationAccess(conversation, authenticatedUserId);
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_LIMIT));
+        // Fetch one extra row to know whether another slice exists, without a count query
+        Pageable slice = PageRequest.of(0, pageSize + 1);
+
+        List<Message> messages;
+        if (before != null) {
+            OffsetDateTime cursorCreatedAt = findCursorCreatedAt(before, conversationId);
+            messages = messageRepository.findBeforeCursor(
+                    conversationId, authenticatedUserId, cursorCreatedAt, before, slice);
+        } else if (after != null) {
+            OffsetDateTime cursorCreatedAt = findCursorCreatedAt(after, conversationId);
+            messages = messageRepository.findAfterCursor(
+                    conversationId, authenticatedUserId, cursorCreatedAt, after, slice);
+        } else {
+            messages = messageRepository.findLatestByConversationId(conversationId, authenticatedUserId, slice);
+        }
+
+        boolean hasMore = messages.size() > pageSize;
+        if (hasMore) {
+            messages = messages.subList(0, pageSize);
+        }
+
+        ReadWatermarks watermarks = loadReadWatermarks(List.of(conversationId));
+        Map<Integer, List<MessageAttachmentResponse>> attachments = loadAttachments(messages);
+        List<MessageResponse> responses = messages.stream()
+                .map(message -> mapToMessageResponse(message, watermarks, attachments))
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (after != null) {
+            // Newer slices are read oldest first; return them in the same order as the others
+            Collections.reverse(responses);
+        }
+
+        return MessageHistoryResponse.builder()
+                .conversationId(conversationId)
+                .messages(responses)
+                .beforeCursor(responses.isEmpty() ? before : responses.get(responses.size() - 1).getId())
+                .afterCursor(responses.isEmpty() ? after : responses.get(0).getId())
+                .hasMore(hasMore)
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResyncResponse resync(ResyncRequest request, Integer authenticatedUserId) {
+        Map<Integer, Integer> lastSeenMessageIds = request.getLastSeenMessageIds();
+        if (lastSeenMessageIds == null || lastSeenMessageIds.isEmpty()) {
+            return ResyncResponse.builder().conversations(List.of()).build();
+        }
+        if (lastSeenMessageIds.size() > MAX_RESYNC_CONVERSATIONS) {
+            throw new CustomMessagePresentException(
+                    "At most " + MAX_RESYNC_CONVERSATIONS + " conversations can be resynced at once");
+        }
+
+        log.info("Resyncing {} conversations for user ID: {}", lastSeenMessageIds.size(), authenticatedUserId);
+
+        Map<Integer, Conversation> conversations = conversationRepository
+                .findAllWithParticipantsByIdIn(lastSeenMessageIds.keySet()).stream()
+                .filter(conversation -> hasAccess(conversation, authenticatedUserId))
+                .collect(Collectors.toMap(Conversation::getId, conversation -> conversation));
+
+        List<Integer> cursorConversationIds = new ArrayList<>();
+        List<Integer> cursorMessageIds = new ArrayList<>();
+        Set<Integer> reload = new HashSet<>();
+        for (Map.Entry<Integer, Integer> entry : lastSeenMessageIds.entrySet()) {
+            Integer conversationId = entry.getKey();
+            if (!conversations.containsKey(conversationId)) {
+                log.warn("Skipping resync of conversation ID: {} not accessible to user ID: {}",
+                        conversationId, authenticatedUserId);
+            } else if (entry.getValue() == null) {
+                reload.add(conversationId);
+            } else {
+                cursorConversationIds.add(conversationId);
+                cursorMessageIds.add(entry.getValue());
+            }
+        }
+
+        // One query for the missed messages and one for the deletions of the whole batch;
+        // a conversation whose last seen message is gone gets no rows and is reloaded
+        Map<Integer, List<Integer>> missedIds = new HashMap<>();
+        Map<Integer, List<Integer>> deletedMessageIds = new HashMap<>();
+        if (!cursorConversationIds.isEmpty()) {
+            messageRepository.findMissedMessageIds(cursorConversationIds, cursorMessageIds,
+                    authenticatedUserId, MAX_RESYNC_MESSAGES + 1).forEach(row -> {
+                List<Integer> ids = missedIds.computeIfAbsent(row.getConversationId(), id -> new ArrayList<>());
+                if (row.getMessageId() != null) {
+                    ids.add(row.getMessageId());
+                }
+            });
+            messageRepository.findDeletedMessageIds(cursorConversationIds, cursorMessageIds, authenticatedUserId)
+                    .forEach(row -> deletedMessageIds
+                            .computeIfAbsent(row.getConversationId(), id -> new ArrayList<>())
+                            .add(row.getMessageId()));
+        }
+
+        // The shared budget caps the whole batch, spent in request order
+        int budget = MAX_RESYNC_MESSAGES;
+        Map<Integer, List<Message>> missedMessages = new LinkedHashMap<>();
+        List<Integer> idsToLoad = new ArrayList<>();
+        for (Integer conversationId : cursorConversationIds) {
+            List<Integer> ids = missedIds.get(conversationId);
+            if (ids == null || ids.size() > budget) {
+                reload.add(conversationId);
+                continue;
+            }
+            budget -= ids.size();
+            idsToLoad.addAll(ids);
+            missedMessages.put(conversationId, new ArrayList<>());
+        }
+        if (!idsToLoad.isEmpty()) {
+            messageRepository.findAllWithSenderByIdIn(idsToLoad).forEach(message ->
+                    missedMessages.get(message.getConversation().getId()).add(message));
+        }
+
+        ReadWatermarks watermarks = loadReadWatermarks(missedMessages.keySet());
+        Map<Integer, List<MessageAttachmentResponse>> attachments = loadAttachments(missedMessages.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList()));
+
+        List<ConversationResyncResponse> responses = new ArrayList<>();
+        for (Integer conversationId : lastSeenMessageIds.keySet()) {
+            if (reload.contains(conversationId)) {
+                responses.add(ConversationResyncResponse.builder()
+                        .conversationId(conversationId)
+                        .messages(List.of())
+                        .deletedMessageIds(List.of())
+                        .readReceipts(List.of())
+                        .reload(true)
+                        .build());
+            } else if (missedMessages.containsKey(conversationId)) {
+                responses.add(ConversationResyncResponse.builder()
+                        .conversationId(conversationId)
+                        .messages(missedMessages.get(conversationId).stream()
+                                .map(message -> mapToMessageResponse(message, watermarks, attachments))
+                                .collect(Collectors.toList()))
+                        .deletedMessageIds(deletedMessageIds.getOrDefault(conversationId, List.of()))
+                        .readReceipts(watermarks.forConversation(conversationId).stream()
+                                .filter(watermark -> !watermark.getUserId().equals(authenticatedUserId))
+                                .map(this::mapToReadReceipt)
+                                .collect(Collectors.toList()))
+                        .reload(false)
+                        .build());
+            }
+        }
+
+        return ResyncResponse.builder().conversations(responses).build();
     }
 
     @Override
@@ -275,81 +491,116 @@ public class ChatServiceImpl implements ChatService {
 
         validateConversationAccess(conversation, authenticatedUserId);
 
-        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
-
+        Integer requestedWatermark;
         if (request.getMessageId() != null) {
-            // Mark specific message as read
-            Message message = messageRepository.findById(request.getMessageId())
-                    .orElseThrow(() -> new CustomMessagePresentException("Message not found"));
-
-            if (!message.getIsRead()) {
-                message.setIsRead(true);
-                message.setReadAt(now);
-                messageRepository.save(message);
+            // Read up to a specific message
+            if (!messageRepository.existsByIdAndConversationId(request.getMessageId(), conversation.getId())) {
+                throw new CustomMessagePresentException("Message not found");
             }
+            requestedWatermark = request.getMessageId();
         } else {
-            // Mark all unread messages as read
-            messageRepository.markAllAsReadInConversation(
-                    request.getConversationId(),
-                    authenticatedUserId,
-                    now
-            );
+            // Read everything up to the latest message
+            if (conversation.getLastMessage() == null) {
+                return;
+            }
+            requestedWatermark = conversation.getLastMessage().getId();
         }
 
-        // Reset unread count
-        unreadCountRepository.resetUnreadCount(request.getConversationId(), authenticatedUserId);
+        // Single row write regardless of how many messages were unread
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        Optional<Integer> advanced = unreadCountRepository.advanceReadWatermark(
+                conversation.getId(), authenticatedUserId, requestedWatermark, now);
+        if (advanced.isEmpty()) {
+            // An older or repeated receipt leaves the watermark, the count and the other clients unchanged
+            log.debug("Read watermark of user ID: {} already at or past message ID: {}",
+                    authenticatedUserId, requestedWatermark);
+            return;
+        }
+        Integer watermark = advanced.get();
 
-        log.info("Messages marked as read successfully");
+        Integer conversationId = conversation.getId();
+        Message lastMessage = conversation.getLastMessage();
+        long unreadCount = lastMessage == null || watermark >= lastMessage.getId()
+                ? 0L
+                : messageRepository.countUnreadAfterWatermark(conversationId, authenticatedUserId, watermark);
 
-        // Broadcast read receipt via WebSocket
-        broadcastReadReceipt(request.getConversationId(), authenticatedUserId);
+        log.info("Read watermark of user ID: {} advanced to message ID: {}", authenticatedUserId, watermark);
+
+        // Counter and receipt follow the watermark only once it is persisted
+        runAfterCommit(() -> {
+            unreadCountRegistry.set(conversationId, authenticatedUserId, unreadCount);
+            broadcastReadReceipt(conversationId, authenticatedUserId, watermark, now);
+        });
     }
 
     @Override
-    @Transactional(readOnly = true)
     public Long getTotalUnreadCount(Integer userId) {
-        return unreadCountRepository.getTotalUnreadCountByUserId(userId);
+        return unreadCountRegistry.getTotal(userId);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public UnreadCountResponse getConversationUnreadCount(Integer conversationId, Integer userId) {
-        ConversationUnreadCount unreadCount = unreadCountRepository
-                .findByConversationIdAndUserId(conversationId, userId)
-                .orElse(null);
-
         return UnreadCountResponse.builder()
                 .conversationId(conversationId)
-                .unreadCount(unreadCount != null ? unreadCount.getUnreadCount().longValue() : 0L)
+                .unreadCount(unreadCountRegistry.get(conversationId, userId))
                 .build();
     }
 
     @Override
     @Transactional(readOnly = true)
-    public Page<ConversationResponse> searchConversations(Integer userId, String searchTerm, Pageable pageable) {
+    public ConversationSearchResponse searchConversations(Integer userId, String searchTerm,
+                                                          Float cursorRank, Integer cursorId, int limit) {
         log.info("Searching conversations for user ID: {} with term: {}", userId, searchTerm);
 
-        Page<Conversation> conversations = conversationRepository.findAllByUserId(userId, pageable);
+        String term = searchTerm != null ? searchTerm.trim() : "";
+        if (term.isEmpty()) {
+            throw new CustomMessagePresentException("Search term must not be empty");
+        }
+        if (term.length() > MAX_SEARCH_TERM_LENGTH) {
+            throw new CustomMessagePresentException("Search term must not exceed " + MAX_SEARCH_TERM_LENGTH + " characters");
+        }
+        if ((cursorRank == null) != (cursorId == null)) {
+            throw new CustomMessagePresentException("cursorRank and cursorId must be provided together");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+        // Fetch one extra hit to know whether another slice exists, without a count query
+        List<ConversationRepository.ConversationSearchHit> hits =
+                conversationRepository.searchByUserId(userId, term, cursorRank, cursorId, pageSize + 1);
+
+        boolean hasMore = hits.size() > pageSize;
+        if (hasMore) {
+            hits = hits.subList(0, pageSize);
+        }
+
+        List<Integer> conversationIds = hits.stream()
+                .map(ConversationRepository.ConversationSearchHit::getConversationId)
+                .collect(Collectors.toList());
+        Map<Integer, Conversation> conversationsById = conversationRepository
+                .findAllWithParticipantsByIdIn(conversationIds).stream()
+                .collect(Collectors.toMap(Conversation::getId, conversation -> conversation));
+
+        // Keep the rank order of the hits
+        List<Conversation> conversations = conversationIds.stream()
+                .map(conversationsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
-        // Filter by search term (simplified - you can enhance this)
-        return conversations.map(conv -> mapToConversationResponse(conv, userId));
+        ConversationRepository.ConversationSearchHit last = hits.isEmpty() ? null : hits.get(hits.size() - 1);
+        return ConversationSearchResponse.builder()
+                .conversations(mapToConversationResponses(conversations, userId))
+                .cursorRank(last != null ? last.getRank() : null)
+                .cursorId(last != null ? last.getConversationId() : null)
+                .hasMore(hasMore)
+                .build();
     }
 
     @Override
-    @Transactional(readOnly = true)
     public ChatStatsResponse getChatStats(Integer userId) {
         log.info("Fetching chat statistics for user ID: {}", userId);
 
-        return ChatStatsResponse.builder()
-                .totalConversations(conversationRepository.count())
-                .openConversations(conversationRepository.countByStatus(ConversationStatus.OPEN))
-                .assignedConversations(conversationRepository.countByStatus(ConversationStatus.ASSIGNED))
-                .closedConversations(conversationRepository.countByStatus(ConversationStatus.CLOSED))
-                .unassignedConversations(conversationRepository.countUnassignedOpen())
-                .totalMessages(messageRepository.count())
-                .totalUnreadMessages(unreadCountRepository.getTotalUnreadCountByUserId(userId))
-                .onlineUsers((long) userPresenceService.getOnlineUsers().size())
-                .onlineSuperAdmins((long) userPresenceService.getOnlineSuperAdmins().size())
+        return chatStatistics.snapshot()
+                .totalUnreadMessages(unreadCountRegistry.getTotal(userId))
                 .build();
     }
 
@@ -357,46 +608,111 @@ public class ChatServiceImpl implements ChatService {
     // Helper Methods
     // =====================================================
 
+    private OffsetDateTime findCursorCreatedAt(Integer messageId, Integer conversationId) {
+        return messageRepository.findCreatedAtByIdAndConversationId(messageId, conversationId)
+                .orElseThrow(() -> new CustomMessagePresentException("Cursor message not found in conversation"));
+    }
+
     private void validateConversationAccess(Conversation conversation, Integer userId) {
-        boolean hasAccess = conversation.getCustomer().getId().equals(userId) ||
+        if (!hasAccess(conversation, userId)) {
+            throw new CustomMessagePresentException("You don't have access to this conversation");
+        }
+    }
+
+    private boolean hasAccess(Conversation conversation, Integer userId) {
+        return conversation.getCustomer().getId().equals(userId) ||
                 (conversation.getSuperAdmin() != null && conversation.getSuperAdmin().getId().equals(userId));
+    }
 
-        if (!hasAccess) {
-            throw new CustomMessagePresentException("You don't have access to this conversation");
+    private boolean isUnassignedOpen(Conversation conversation) {
+        return conversation.getStatus() == ConversationStatus.OPEN && conversation.getSuperAdmin() == null;
+    }
+
+    private Set<Integer> resolveRecipientIds(Conversation conversation, Integer senderId) {
+        Set<Integer> recipientIds = new HashSet<>();
+        recipientIds.add(conversation.getCustomer().getId());
+        if (conversation.getSuperAdmin() != null) {
+            recipientIds.add(conversation.getSuperAdmin().getId());
         }
+        recipientIds.remove(senderId);
+        return recipientIds;
     }
 
     private ConversationResponse mapToConversationResponse(Conversation conversation, Integer currentUserId) {
-        // Get unread count for current user
-        Long unreadCount = 0L;
-        if (currentUserId != null) {
-            ConversationUnreadCount unread = unreadCountRepository
-                    .findByConversationIdAndUserId(conversation.getId(), currentUserId)
-                    .orElse(null);
-            unreadCount = unread != null ? unread.getUnreadCount().longValue() : 0L;
+        return mapToConversationResponses(List.of(conversation), currentUserId).get(0);
+    }
+
+    private Page<ConversationResponse> mapToConversationResponsePage(Page<Conversation> conversations,
+                                                                     Integer currentUserId) {
+        List<ConversationResponse> content = mapToConversationResponses(conversations.getContent(), currentUserId);
+        return new PageImpl<>(content, conversations.getPageable(), conversations.getTotalElements());
+    }
+
+    /**
+     * Maps a page of conversations using a fixed number of batched queries
+     * (participant roles, presence and unread counts); the last message is read
+     * through the denormalized pointer on the conversation,
+     * independent of how many conversations are on the page.
+     */
+    private List<ConversationResponse> mapToConversationResponses(List<Conversation> conversations,
+                                                                  Integer currentUserId) {
+        if (conversations.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Integer> conversationIds = conversations.stream()
+                .map(Conversation::getId)
+                .collect(Collectors.toList());
+
+        Set<Integer> participantIds = new HashSet<>();
+        for (Conversation conversation : conversations) {
+            participantIds.add(conversation.getCustomer().getId());
+            if (conversation.getSuperAdmin() != null) {
+                participantIds.add(conversation.getSuperAdmin().getId());
+            }
         }
 
-        // Get last message
-        MessageResponse lastMessage = null;
-        List<Message> lastMessages = messageRepository.findLastMessageByConversationId(conversation.getId());
-        if (!lastMessages.isEmpty()) {
-            lastMessage = mapToMessageResponse(lastMessages.get(0));
+        // Initializes the role collections of the participants already in the persistence context
+        chatUserRepository.findAllWithRolesByIdIn(participantIds);
+        Map<Integer, UserPresenceResponse> presences = userPresenceService.getUserPresences(participantIds);
+
+        ReadWatermarks watermarks = loadReadWatermarks(conversationIds);
+        Map<Integer, Long> unreadCounts = currentUserId != null
+                ? unreadCountRegistry.getForUser(currentUserId, conversationIds)
+                : Collections.emptyMap();
+
+        List<ConversationResponse> responses = new ArrayList<>(conversations.size());
+        for (Conversation conversation : conversations) {
+            Message lastMessage = conversation.getLastMessage();
+
+            responses.add(ConversationResponse.builder()
+                    .id(conversation.getId())
+                    .customer(mapToUserResponse(conversation.getCustomer(), presences))
+                    .superAdmin(conversation.getSuperAdmin() != null
+                            ? mapToUserResponse(conversation.getSuperAdmin(), presences) : null)
+                    .status(conversation.getStatus())
+                    .lastMessage(lastMessage != null ? mapToMessageResponse(lastMessage, watermarks, Map.of()) : null)
+                    .unreadCount(unreadCounts.getOrDefault(conversation.getId(), 0L))
+                    .lastMessageAt(conversation.getLastMessageAt())
+                    .createdAt(conversation.getCreatedAt())
+                    .updatedAt(conversation.getUpdatedAt())
+                    .build());
         }
+        return responses;
+    }
 
-        return ConversationResponse.builder()
-                .id(conversation.getId())
-                .customer(mapToUserResponse(conversation.getCustomer()))
-                .superAdmin(conversation.getSuperAdmin() != null ? mapToUserResponse(conversation.getSuperAdmin()) : null)
-                .status(conversation.getStatus())
-                .lastMessage(lastMessage)
-                .unreadCount(unreadCount)
-                .lastMessageAt(conversation.getLastMessageAt())
-                .createdAt(conversation.getCreatedAt())
-                .updatedAt(conversation.getUpdatedAt())
-                .build();
+    private ReadWatermarks loadReadWatermarks(Collection<Integer> conversationIds) {
+        return ReadWatermarks.of(unreadCountRepository.findReadWatermarks(conversationIds));
+    }
+
+    private Map<Integer, List<MessageAttachmentResponse>> loadAttachments(List<Message> messages) {
+        return messageService.getAttachmentsByMessageIds(messages.stream()
+                .map(Message::getId)
+                .collect(Collectors.toList()));
     }
 
-    private MessageResponse mapToMessageResponse(Message message) {
+    private MessageResponse mapToMessageResponse(Message message, ReadWatermarks watermarks,
+                                                 Map<Integer, List<MessageAttachmentResponse>> attachments) {
         User sender = message.getSender();
         String senderRole = getSenderRole(message.getConversation(), sender);
 
@@ -408,20 +724,21 @@ public class ChatServiceImpl implements ChatService {
                 .senderRole(senderRole)
                 .content(message.getContent())
                 .messageType(message.getMessageType())
-                .isRead(message.getIsRead())
-                .readAt(message.getReadAt())
-                .attachments(new ArrayList<>()) // Populated by MessageService if needed
+                .status(message.getStatus())
+                .isRead(watermarks.isRead(message))
+                .readAt(watermarks.readAt(message))
+                .attachments(attachments.getOrDefault(message.getId(), List.of()))
                 .createdAt(message.getCreatedAt())
                 .updatedAt(message.getUpdatedAt())
                 .build();
     }
 
-    private ChatUserResponse mapToUserResponse(User user) {
+    private ChatUserResponse mapToUserResponse(User user, Map<Integer, UserPresenceResponse> presences) {
         List<String> roleNames = user.getRoles().stream()
                 .map(Role::getName)
                 .collect(Collectors.toList());
 
-        UserPresenceResponse presence = userPresenceService.getUserPresence(user.getId());
+        UserPresenceResponse presence = presences.get(user.getId());
 
         return ChatUserResponse.builder()
                 .id(user.getId())
@@ -447,19 +764,24 @@ public class ChatServiceImpl implements ChatService {
         return "SYSTEM";
     }
 
-    private void broadcastMessage(Message message) {
-        // Broadcast to conversation topic
-        messagingTemplate.convertAndSend(
-                "/topic/conversation/" + message.getConversation().getId(),
-                mapToMessageResponse(message)
-        );
+    private ReadReceiptDto mapToReadReceipt(ReadWatermark watermark) {
+        return ReadReceiptDto.builder()
+                .conversationId(watermark.getConversationId())
+                .messageId(watermark.getLastReadMessageId())
+                .userId(watermark.getUserId())
+                .timestamp(watermark.getLastReadAt() != null
+                        ? watermark.getLastReadAt().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)
+                        : null)
+                .build();
     }
 
-    private void broadcastReadReceipt(Integer conversationId, Integer userId) {
-        Map<String, Object> receipt = new HashMap<>();
-        receipt.put("conversationId", conversationId);
-        receipt.put("userId", userId);
-        receipt.put("timestamp", OffsetDateTime.now(ZoneOffset.UTC));
+    private void broadcastReadReceipt(Integer conversationId, Integer userId, Integer messageId, OffsetDateTime readAt) {
+        ReadReceiptDto receipt = ReadReceiptDto.builder()
+                .conversationId(conversationId)
+                .messageId(messageId)
+                .userId(userId)
+                .timestamp(readAt.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
+                .build();
 
         messagingTemplate.convertAndSend(
                 "/topic/conversation/" + conversationId + "/read",
@@ -467,16 +789,69 @@ public class ChatServiceImpl implements ChatService {
         );
     }
 
-    private void notifyAvailableSuperAdmins(Conversation conversation) {
-        List<User> onlineAdmins = chatUserRepository.findAllActiveSuperAdmins();
+    /**
+     * Sends the new conversation to the super admins that are connected right now, once the
+     * transaction has committed. Recipients come from {@link ConnectedAdminRegistry}, so the
+     * cost follows the number of online admins; the conversation is mapped and serialized
+     * once and only the unread count is added per admin. Admins that connect later load
+     * unassigned conversations through the REST API.
+     */
+    private void notifyAvailableSuperAdmins(ConversationResponse conversation) {
+        EncodedPayload payload = outboundPayloadCache.encode(conversation, UNREAD_COUNT_FIELD);
+
+        Runnable fanout = () -> {
+            for (ConnectedAdminRegistry.ConnectedAdmin admin : connectedAdminRegistry.getConnected()) {
+                outboundPayloadCache.sendToUser(
+                        admin.firebaseUserId(),
+                        "/queue/new-conversation",
+                        payload,
+                        Map.of(UNREAD_COUNT_FIELD, unreadCountRegistry.get(conversation.getId(), admin.userId()))
+                );
+            }
+        };
+
+        runAfterCommit(fanout);
+    }
+
+    /**
+     * Seeds the unread counter of a newly assigned super admin with the messages after their
+     * read watermark, matching what the registry derives on startup. The customer's earlier
+     * messages, such as the initial one, never reached the admin through a message event.
+     * A replaced admin is no longer a participant, so their counter is cleared.
+     */
+    private void seedAssignedUnreadCount(Integer conversationId, Integer superAdminId, User previousSuperAdmin) {
+        Integer watermark = unreadCountRepository.findByConversationIdAndUserId(conversationId, superAdminId)
+                .map(ConversationUnreadCount::getLastReadMessageId)
+                .orElse(null);
+        long unreadCount = messageRepository.countUnreadAfterWatermark(
+                conversationId, superAdminId, watermark != null ? watermark : 0);
+        Integer previousSuperAdminId = previousSuperAdmin != null && !previousSuperAdmin.getId().equals(superAdminId)
+                ? previousSuperAdmin.getId()
+                : null;
+
+        runAfterCommit(() -> {
+            unreadCountRegistry.set(conversationId, superAdminId, unreadCount);
+            if (previousSuperAdminId != null) {
+                unreadCountRegistry.reset(conversationId, previousSuperAdminId);
+            }
+        });
+    }
 
-        for (User admin : onlineAdmins) {
-            messagingTemplate.convertAndSendToUser(
-                    admin.getFirebaseUserId(),
-                    "/queue/new-conversation",
-                    mapToConversationResponse(conversation, admin.getId())
-            );
+    /**
+     * Runs an action once the current transaction has committed, or right away without one.
+     * Nothing is run when the transaction rolls back.
+     */
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     private void notifyConversationAssignment(Conversation conversation) {
@@ -0,0 +1,43 @@
+package com.nazran.chat.service.impl;
+
+import com.nazran.chat.entity.Conversation;
+import com.nazran.chat.entity.Message;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maintains the denormalized last message pointer and preview of conversations.
+ */
+@Component
+public class ConversationLastMessageUpdater {
+
+    private static final int MAX_PREVIEW_LENGTH = 255;
+
+    /**
+     * Make the message the latest message of the conversation.
+     *
+     * @param conversation the conversation
+     * @param message      the new latest message
+     */
+    public void update(Conversation conversation, Message message) {
+        conversation.setLastMessage(message);
+        conversation.setLastMessagePreview(buildPreview(message.getContent()));
+        conversation.setLastMessageAt(message.getCreatedAt());
+    }
+
+    /**
+     * Refresh the preview after the latest message was edited, e.g. soft deleted.
+     *
+     * @param conversation the conversation
+     * @param message      the latest message
+     */
+    public void refreshPreview(Conversation conversation, Message message) {
+        conversation.setLastMessagePreview(buildPreview(message.getContent()));
+    }
+
+    private String buildPreview(String content) {
+        if (content == null || content.length() <= MAX_PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, MAX_PREVIEW_LENGTH);
+    }
+}
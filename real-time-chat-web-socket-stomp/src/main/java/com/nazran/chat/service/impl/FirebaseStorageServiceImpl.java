@@ -1,5 +1,7 @@
 package com.nazran.chat.service.impl;
 
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
@@ -14,21 +16,26 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.zip.CRC32C;
 
 /**
  * Implementation of FirebaseStorageService for handling file uploads to Firebase Storage.
+ * Files are streamed through resumable uploads instead of being read into memory.
  */
 @Service
 @RequiredArgsConstructor
@@ -36,12 +43,17 @@ public class FirebaseStorageServiceImpl implements FirebaseStorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(FirebaseStorageServiceImpl.class);
 
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+
     private final MediaStorageRepository mediaStorageRepository;
     private final Storage storage;
     @Value("${BUCKET_NAME}")
     private String bucketName;
     @Value("${FIREBASE_URL}")
     private String firebaseUrl;
+    // Must be a multiple of 256 KiB
+    @Value("${chat.file.upload-chunk-size:1048576}")
+    private int uploadChunkSize;
 
     /**
      * {@inheritDoc}
@@ -57,9 +69,24 @@ public class FirebaseStorageServiceImpl implements FirebaseStorageService {
         if (file.isEmpty()) {
             throw new CustomMessagePresentException("File cannot be empty.");
         }
+
+        uploadFile(file, file.getOriginalFilename(), file.getContentType(), ownerId, referenceType, referenceId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void uploadFile(InputStreamSource content, String originalFilename, String mimeType, Integer ownerId,
+                           ReferenceType referenceType, Integer referenceId) throws IOException {
+
+        // Validate input parameters
+        Objects.requireNonNull(content, "Content must not be null.");
+        Objects.requireNonNull(referenceType, "Reference type must not be null.");
+        Objects.requireNonNull(referenceId, "Reference ID must not be null.");
+
         // Prepare file metadata
-        String fileExtension = getFileExtension(file.getOriginalFilename()); //The file extension (e.g., "jpg", "png", "pdf").
-        String mimeType = file.getContentType(); //The MIME type of the file (e.g., "image/png", "application/pdf").
+        String fileExtension = getFileExtension(originalFilename); //The file extension (e.g., "jpg", "png", "pdf").
 
 
         // Generate new file key
@@ -75,8 +102,8 @@ public class FirebaseStorageServiceImpl implements FirebaseStorageService {
             deleteFile(existingMedia.getExternalId()); // Delete the old file
         });
 
-        try (InputStream stream = file.getInputStream()) { // Ensures InputStream is properly closed
-            storage.create(blobInfo, stream.readAllBytes());
+        try (InputStream stream = content.getInputStream()) { // Ensures InputStream is properly closed
+            streamToStorage(stream, blobInfo);
 
             // Construct the URL
             String encodedFileKey = URLEncoder.encode(fileKey, StandardCharsets.UTF_8);
@@ -172,6 +199,50 @@ public class FirebaseStorageServiceImpl implements FirebaseStorageService {
         }
     }
 
+    /**
+     * Streams the content into a resumable upload session.
+     * Heap use is bounded by the read buffer and the channel's chunk size regardless of file size.
+     * The CRC32C is computed while streaming and checked against the checksum computed by the
+     * storage service; a mismatching object is deleted.
+     *
+     * @param stream   the content to upload
+     * @param blobInfo the target object
+     * @throws IOException if reading, writing or the checksum verification fails
+     */
+    private void streamToStorage(InputStream stream, BlobInfo blobInfo) throws IOException {
+        CRC32C crc32c = new CRC32C();
+        byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+
+        try (WriteChannel writer = storage.writer(blobInfo)) {
+            writer.setChunkSize(uploadChunkSize);
+
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                crc32c.update(buffer, 0, read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    writer.write(chunk);
+                }
+            }
+        }
+
+        String expectedCrc32c = encodeCrc32c(crc32c.getValue());
+        Blob blob = storage.get(blobInfo.getBlobId(), Storage.BlobGetOption.fields(Storage.BlobField.CRC32C));
+        if (blob == null || !expectedCrc32c.equals(blob.getCrc32c())) {
+            logger.error("CRC32C mismatch for {}: expected {}, stored {}",
+                    blobInfo.getName(), expectedCrc32c, blob != null ? blob.getCrc32c() : null);
+            storage.delete(blobInfo.getBlobId());
+            throw new IOException("Checksum mismatch while uploading " + blobInfo.getName());
+        }
+    }
+
+    /**
+     * Encodes a CRC32C value the way Cloud Storage reports it: base64 of the big-endian 4 bytes.
+     */
+    private String encodeCrc32c(long value) {
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(Integer.BYTES).putInt((int) value).array());
+    }
+
     private String getFileExtension(String fileName) {
         return fileName.substring(fileName.lastIndexOf('.') + 1); // Extract the file extension
     }
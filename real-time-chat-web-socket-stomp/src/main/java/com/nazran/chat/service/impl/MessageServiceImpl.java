@@ -6,9 +6,12 @@ import com.nazran.chat.entity.Conversation;
 import com.nazran.chat.entity.MediaStorage;
 import com.nazran.chat.entity.Message;
 import com.nazran.chat.entity.User;
+import com.nazran.chat.enums.MessageStatus;
 import com.nazran.chat.enums.MessageType;
 import com.nazran.chat.enums.ReferenceType;
+import com.nazran.chat.event.MessageSentEvent;
 import com.nazran.chat.exception.CustomMessagePresentException;
+import com.nazran.chat.realtime.ChatStatistics;
 import com.nazran.chat.repository.ConversationRepository;
 import com.nazran.chat.repository.MediaStorageRepository;
 import com.nazran.chat.repository.MessageRepository;
@@ -18,39 +21,86 @@ import com.nazran.chat.service.MessageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
  * Implementation of MessageService.
  * Handles message attachments using MediaStorage and FirebaseStorageService.
+ * Attachments are sent in three steps: a PENDING message is persisted, the file is
+ * uploaded on a bounded executor without holding a database connection, and the
+ * message is finalized and broadcast in a short transaction.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MessageServiceImpl implements MessageService {
 
+    private static final String SPOOL_FILE_PREFIX = "chat-attachment-";
+    private static final String SPOOL_FILE_SUFFIX = ".upload";
+
+    /**
+     * Identifies this run of the instance on PENDING messages and in the spool directory.
+     */
+    private final UUID uploadRunId = UUID.randomUUID();
+
     private final MessageRepository messageRepository;
     private final MediaStorageRepository mediaStorageRepository;
     private final ConversationRepository conversationRepository;
     private final UserRepository chatUserRepository;
     private final FirebaseStorageService firebaseStorageService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor attachmentUploadExecutor;
+    private final ChatStatistics chatStatistics;
+    private final ConversationLastMessageUpdater lastMessageUpdater;
 
     @Value("${chat.file.max-size:10485760}") // 10MB default
     private Long maxFileSize;
 
+    @Value("${chat.file.pending-timeout-ms:900000}") // 15 minutes default
+    private long pendingTimeoutMs;
+
+    /**
+     * Must be unique among the instances running at the same time and stable across restarts.
+     */
+    @Value("${chat.instance-id:${HOSTNAME:local}}")
+    private String instanceId;
+
+    @Value("${chat.file.spool-dir:${java.io.tmpdir}/chat-attachments}")
+    private String spoolRoot;
+
     @Value("${chat.file.allowed-formats:image/jpeg,image/png,image/jpg,application/pdf,image/gif,video/mp4,audio/mpeg}")
     private String allowedFormats;
 
     @Override
-    @Transactional
     public MessageResponse sendMessageWithAttachment(
             Integer conversationId,
             MultipartFile file,
@@ -62,63 +112,41 @@ public class MessageServiceImpl implements MessageService {
         // Validate file
         validateFile(file);
 
-        Conversation conversation = conversationRepository.findById(conversationId)
-                .orElseThrow(() -> new CustomMessagePresentException("Conversation not found"));
-
-        validateConversationAccess(conversation, authenticatedUserId);
-
-        User sender = chatUserRepository.findById(authenticatedUserId)
-                .orElseThrow(() -> new CustomMessagePresentException("Sender not found"));
-
-        // Determine message type based on file type
-        MessageType messageType = determineMessageType(file.getContentType());
-
-        // Create message first
-        Message message = new Message();
-        message.setConversation(conversation);
-        message.setSender(sender);
-        message.setContent(caption != null && !caption.isEmpty() ? caption : file.getOriginalFilename());
-        message.setMessageType(messageType);
-        message.setIsRead(false);
-        message = messageRepository.save(message);
+        // Spool the upload to a file of our own; the multipart file is gone once the request ends
+        Path spooledFile = spoolToTempFile(file);
+        String originalFilename = file.getOriginalFilename();
+        String contentType = file.getContentType();
 
+        // Phase 1: persist a PENDING message in a short transaction
+        MessageResponse pendingMessage;
         try {
-            // Upload file to Firebase Storage using existing service
-            firebaseStorageService.uploadFile(
-                    file,
-                    authenticatedUserId,
-                    ReferenceType.CHAT_MESSAGE,
-                    message.getId()
-            );
-
-            // Update conversation last message timestamp
-            conversation.setLastMessageAt(message.getCreatedAt());
-            conversationRepository.save(conversation);
-
-            log.info("Message with attachment sent successfully with ID: {}", message.getId());
-
-            // Broadcast message via WebSocket
-            MessageResponse response = mapToMessageResponse(message);
-            messagingTemplate.convertAndSend(
-                    "/topic/conversation/" + conversationId,
-                    response
-            );
-
-            return response;
+            pendingMessage = transactionTemplate.execute(status ->
+                    createPendingMessage(conversationId, caption, originalFilename, contentType, authenticatedUserId));
+        } catch (RuntimeException e) {
+            deleteTempFile(spooledFile);
+            throw e;
+        }
+        Integer messageId = pendingMessage.getId();
 
-        } catch (IOException e) {
-            log.error("Failed to upload attachment: {}", e.getMessage(), e);
-            // Clean up the message if file upload fails
-            messageRepository.delete(message);
-            throw new CustomMessagePresentException("Failed to upload attachment: " + e.getMessage());
+        // Phase 2: upload outside of any transaction on the bounded upload executor
+        try {
+            attachmentUploadExecutor.execute(() ->
+                    uploadAndFinalize(messageId, spooledFile, originalFilename, contentType, authenticatedUserId));
+        } catch (TaskRejectedException e) {
+            log.error("Attachment upload for message ID: {} rejected, upload queue is full", messageId);
+            deleteTempFile(spooledFile);
+            return markFailed(messageId);
         }
+
+        return pendingMessage;
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<MessageAttachmentResponse> getConversationAttachments(
+    public Page<MessageAttachmentResponse> getConversationAttachments(
             Integer conversationId,
-            Integer authenticatedUserId) {
+            Integer authenticatedUserId,
+            Pageable pageable) {
 
         log.info("Fetching attachments for conversation ID: {}", conversationId);
 
@@ -127,18 +155,23 @@ public class MessageServiceImpl implements MessageService {
 
         validateConversationAccess(conversation, authenticatedUserId);
 
-        // Get all messages in the conversation
-        List<Message> messages = messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId);
-
-        // Get all media storage entries for these messages
-        return messages.stream()
-                .map(Message::getId)
-                .map(messageId -> mediaStorageRepository.findByReferenceIdAndReferenceType(
-                        messageId, ReferenceType.CHAT_MESSAGE))
-                .filter(opt -> opt.isPresent())
-                .map(opt -> opt.get())
-                .map(this::mapToAttachmentResponse)
-                .collect(Collectors.toList());
+        return mediaStorageRepository.findConversationAttachments(conversationId, pageable)
+                .map(this::mapToAttachmentResponse);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Integer, List<MessageAttachmentResponse>> getAttachmentsByMessageIds(Collection<Integer> messageIds) {
+        if (messageIds.isEmpty()) {
+            return Map.of();
+        }
+
+        return mediaStorageRepository
+                .findAllByReferenceTypeAndReferenceIdIn(ReferenceType.CHAT_MESSAGE, messageIds)
+                .stream()
+                .collect(Collectors.groupingBy(
+                        MediaStorage::getReferenceId,
+                        Collectors.mapping(this::mapToAttachmentResponse, Collectors.toList())));
     }
 
     @Override
@@ -167,10 +200,18 @@ public class MessageServiceImpl implements MessageService {
         }
 
         // Soft delete: Update content to indicate deletion
-        message.setContent("[Message deleted]");
+        message.setContent(Message.DELETED_CONTENT);
         message.setMessageType(MessageType.SYSTEM);
+        message.setDeletedAt(OffsetDateTime.now(ZoneOffset.UTC));
         messageRepository.save(message);
 
+        // Keep the conversation preview in sync when the latest message is deleted
+        Conversation conversation = message.getConversation();
+        if (conversation.getLastMessage() != null && conversation.getLastMessage().getId().equals(messageId)) {
+            lastMessageUpdater.refreshPreview(conversation, message);
+            conversationRepository.save(conversation);
+        }
+
         log.info("Message deleted successfully");
 
         // Broadcast deletion via WebSocket
@@ -184,6 +225,216 @@ public class MessageServiceImpl implements MessageService {
     // Helper Methods
     // =====================================================
 
+    private MessageResponse createPendingMessage(Integer conversationId, String caption, String originalFilename,
+                                         String contentType, Integer authenticatedUserId) {
+        Conversation conversation = conversationRepository.findById(conversationId)
+                .orElseThrow(() -> new CustomMessagePresentException("Conversation not found"));
+
+        validateConversationAccess(conversation, authenticatedUserId);
+
+        User sender = chatUserRepository.findById(authenticatedUserId)
+                .orElseThrow(() -> new CustomMessagePresentException("Sender not found"));
+
+        Message message = new Message();
+        message.setConversation(conversation);
+        message.setSender(sender);
+        message.setContent(caption != null && !caption.isEmpty() ? caption : originalFilename);
+        // Determine message type based on file type
+        message.setMessageType(determineMessageType(contentType));
+        message.setStatus(MessageStatus.PENDING);
+        message.setUploadInstanceId(instanceId);
+        message.setUploadRunId(uploadRunId);
+        message = messageRepository.save(message);
+
+        chatStatistics.recordMessages(1);
+
+        return mapToMessageResponse(message, List.of());
+    }
+
+    private void uploadAndFinalize(Integer messageId, Path spooledFile, String originalFilename,
+                                   String contentType, Integer authenticatedUserId) {
+        try {
+            // Upload file to Firebase Storage using existing service
+            firebaseStorageService.uploadFile(
+                    new FileSystemResource(spooledFile),
+                    originalFilename,
+                    contentType,
+                    authenticatedUserId,
+                    ReferenceType.CHAT_MESSAGE,
+                    messageId
+            );
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to upload attachment for message ID: {}: {}", messageId, e.getMessage(), e);
+            failQuietly(messageId);
+            return;
+        } finally {
+            deleteTempFile(spooledFile);
+        }
+
+        // Phase 3: finalize and broadcast in a short transaction
+        try {
+            transactionTemplate.executeWithoutResult(status -> finalizeMessage(messageId, authenticatedUserId));
+        } catch (RuntimeException e) {
+            log.error("Failed to finalize message ID: {}: {}", messageId, e.getMessage(), e);
+            failQuietly(messageId);
+        }
+    }
+
+    private void finalizeMessage(Integer messageId, Integer authenticatedUserId) {
+        Message message = messageRepository.findById(messageId).orElse(null);
+        if (message == null || message.getStatus() != MessageStatus.PENDING || message.isDeleted()) {
+            // Deleted or given up on while the file was uploading; nobody may see it now
+            log.info("Message ID: {} is no longer pending, discarding its attachment", messageId);
+            discardAttachment(messageId);
+            return;
+        }
+
+        message.setStatus(MessageStatus.SENT);
+        messageRepository.save(message);
+
+        // Update conversation last message pointer
+        Conversation conversation = message.getConversation();
+        lastMessageUpdater.update(conversation, message);
+        conversationRepository.save(conversation);
+
+        log.info("Message with attachment sent successfully with ID: {}", messageId);
+
+        // Broadcast message via WebSocket once the transaction has committed
+        MessageResponse response = mapToMessageResponse(message);
+        eventPublisher.publishEvent(new MessageSentEvent(
+                conversation.getId(), response, resolveRecipientIds(conversation, authenticatedUserId)));
+    }
+
+    /**
+     * Fails the messages left PENDING by earlier runs of this instance, whose upload tasks
+     * were lost with the JVM, and removes the files those runs spooled. Uploads accepted by
+     * this run before it was ready and uploads of other instances are left alone; the
+     * latter are failed by the stale sweep once they time out.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failPendingMessagesOfEarlierRuns() {
+        List<Integer> messageIds = messageRepository.findPendingIdsOfEarlierRuns(instanceId, uploadRunId);
+        if (!messageIds.isEmpty()) {
+            log.warn("Failing {} messages left PENDING by earlier runs of instance {}", messageIds.size(), instanceId);
+            messageIds.forEach(this::failQuietly);
+        }
+        deleteSpoolDirectoriesOfEarlierRuns();
+    }
+
+    /**
+     * Fails messages whose upload has been pending for longer than
+     * {@code chat.file.pending-timeout-ms}, e.g. because finalizing them failed.
+     */
+    @Scheduled(initialDelayString = "${chat.file.pending-sweep-interval-ms:300000}",
+            fixedDelayString = "${chat.file.pending-sweep-interval-ms:300000}")
+    public void failStalePendingMessages() {
+        failPendingMessagesCreatedBefore(OffsetDateTime.now(ZoneOffset.UTC).minusNanos(pendingTimeoutMs * 1_000_000));
+    }
+
+    private void failPendingMessagesCreatedBefore(OffsetDateTime createdBefore) {
+        List<Integer> messageIds = messageRepository.findPendingIdsCreatedBefore(createdBefore);
+        if (messageIds.isEmpty()) {
+            return;
+        }
+
+        log.warn("Failing {} messages stuck in PENDING", messageIds.size());
+        for (Integer messageId : messageIds) {
+            failQuietly(messageId);
+        }
+    }
+
+    /**
+     * Marks a message as failed, drops whatever was uploaded for it and tells the sender.
+     * Errors are logged only; a message left PENDING is picked up by the stale sweep.
+     */
+    private void failQuietly(Integer messageId) {
+        try {
+            markFailed(messageId);
+            discardAttachment(messageId);
+        } catch (RuntimeException e) {
+            log.error("Failed to mark message ID: {} as failed: {}", messageId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Marks a pending message as failed and tells the sender, who is the only one who saw it pending.
+     *
+     * @return the failed message, or null if it was no longer pending
+     */
+    private MessageResponse markFailed(Integer messageId) {
+        MessageResponse response = transactionTemplate.execute(status -> messageRepository.findById(messageId)
+                .filter(message -> message.getStatus() == MessageStatus.PENDING)
+                .map(message -> {
+                    message.setStatus(MessageStatus.FAILED);
+                    return mapToMessageResponse(messageRepository.save(message), List.of());
+                })
+                .orElse(null));
+        if (response == null) {
+            return null;
+        }
+
+        chatUserRepository.findById(response.getSenderId()).ifPresent(sender ->
+                messagingTemplate.convertAndSendToUser(sender.getFirebaseUserId(), "/queue/message-status", response));
+        return response;
+    }
+
+    private void discardAttachment(Integer messageId) {
+        try {
+            firebaseStorageService.deleteFilesByReference(messageId, ReferenceType.CHAT_MESSAGE);
+        } catch (RuntimeException e) {
+            log.error("Failed to discard attachment of message ID: {}: {}", messageId, e.getMessage(), e);
+        }
+    }
+
+    private Path spoolToTempFile(MultipartFile file) {
+        try {
+            Path spoolDirectory = Files.createDirectories(instanceSpoolDirectory().resolve(uploadRunId.toString()));
+            Path spooledFile = Files.createTempFile(spoolDirectory, SPOOL_FILE_PREFIX, SPOOL_FILE_SUFFIX);
+            file.transferTo(spooledFile);
+            return spooledFile;
+        } catch (IOException e) {
+            log.error("Failed to spool attachment: {}", e.getMessage(), e);
+            throw new CustomMessagePresentException("Failed to upload attachment: " + e.getMessage());
+        }
+    }
+
+    private void deleteTempFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path instanceSpoolDirectory() {
+        return Path.of(spoolRoot, instanceId);
+    }
+
+    /**
+     * Deletes the spool directories of earlier runs of this instance; other instances
+     * sharing the spool root keep theirs.
+     */
+    private void deleteSpoolDirectoriesOfEarlierRuns() {
+        Path instanceDirectory = instanceSpoolDirectory();
+        if (!Files.isDirectory(instanceDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> runDirectories = Files.newDirectoryStream(instanceDirectory, Files::isDirectory)) {
+            for (Path runDirectory : runDirectories) {
+                if (runDirectory.getFileName().toString().equals(uploadRunId.toString())) {
+                    continue;
+                }
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(runDirectory,
+                        SPOOL_FILE_PREFIX + "*" + SPOOL_FILE_SUFFIX)) {
+                    files.forEach(this::deleteTempFile);
+                }
+                deleteTempFile(runDirectory);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up spooled attachments in {}: {}", instanceDirectory, e.getMessage());
+        }
+    }
+
     private void validateFile(MultipartFile file) {
         if (file == null || file.isEmpty()) {
             throw new CustomMessagePresentException("File is required");
@@ -206,6 +457,16 @@ public class MessageServiceImpl implements MessageService {
         }
     }
 
+    private Set<Integer> resolveRecipientIds(Conversation conversation, Integer senderId) {
+        Set<Integer> recipientIds = new HashSet<>();
+        recipientIds.add(conversation.getCustomer().getId());
+        if (conversation.getSuperAdmin() != null) {
+            recipientIds.add(conversation.getSuperAdmin().getId());
+        }
+        recipientIds.remove(senderId);
+        return recipientIds;
+    }
+
     private MessageType determineMessageType(String contentType) {
         if (contentType == null) {
             return MessageType.FILE;
@@ -237,15 +498,14 @@ public class MessageServiceImpl implements MessageService {
     }
 
     private MessageResponse mapToMessageResponse(Message message) {
+        return mapToMessageResponse(message, getAttachmentsByMessageIds(List.of(message.getId()))
+                .getOrDefault(message.getId(), List.of()));
+    }
+
+    private MessageResponse mapToMessageResponse(Message message, List<MessageAttachmentResponse> attachments) {
         User sender = message.getSender();
         String senderRole = getSenderRole(message.getConversation(), sender);
 
-        // Get attachment if exists
-        List<MessageAttachmentResponse> attachments = mediaStorageRepository
-                .findByReferenceIdAndReferenceType(message.getId(), ReferenceType.CHAT_MESSAGE)
-                .map(this::mapToAttachmentResponse)
-                .map(List::of)
-                .orElse(List.of());
 
         return MessageResponse.builder()
                 .id(message.getId())
@@ -255,8 +515,9 @@ public class MessageServiceImpl implements MessageService {
                 .senderRole(senderRole)
                 .content(message.getContent())
                 .messageType(message.getMessageType())
-                .isRead(message.getIsRead())
-                .readAt(message.getReadAt())
+                .status(message.getStatus())
+                // Only freshly sent messages are mapped here; they are unread by definition
+                .isRead(false)
                 .attachments(attachments)
                 .createdAt(message.getCreatedAt())
                 .updatedAt(message.getUpdatedAt())
@@ -0,0 +1,68 @@
+package com.nazran.chat.service.impl;
+
+import com.nazran.chat.entity.Message;
+import com.nazran.chat.enums.MessageType;
+import com.nazran.chat.repository.ConversationUnreadCountRepository.ReadWatermark;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read watermarks of the participants of one or more conversations.
+ * A message counts as read once any participant other than its sender has read up to it.
+ */
+final class ReadWatermarks {
+
+    private static final ReadWatermarks EMPTY = new ReadWatermarks(Map.of());
+
+    private final Map<Integer, List<ReadWatermark>> watermarksByConversation;
+
+    private ReadWatermarks(Map<Integer, List<ReadWatermark>> watermarksByConversation) {
+        this.watermarksByConversation = watermarksByConversation;
+    }
+
+    static ReadWatermarks empty() {
+        return EMPTY;
+    }
+
+    static ReadWatermarks of(Collection<ReadWatermark> watermarks) {
+        Map<Integer, List<ReadWatermark>> byConversation = new HashMap<>();
+        for (ReadWatermark watermark : watermarks) {
+            byConversation.computeIfAbsent(watermark.getConversationId(), id -> new ArrayList<>()).add(watermark);
+        }
+        return new ReadWatermarks(byConversation);
+    }
+
+    /**
+     * Returns the watermarks of the participants of a conversation.
+     */
+    List<ReadWatermark> forConversation(Integer conversationId) {
+        return watermarksByConversation.getOrDefault(conversationId, List.of());
+    }
+
+    boolean isRead(Message message) {
+        return message.getMessageType() == MessageType.SYSTEM || readAt(message) != null;
+    }
+
+    /**
+     * Returns when the first recipient's watermark passed the message, or null if unread.
+     */
+    OffsetDateTime readAt(Message message) {
+        OffsetDateTime readAt = null;
+        for (ReadWatermark watermark : watermarksByConversation.getOrDefault(message.getConversation().getId(), List.of())) {
+            if (watermark.getUserId().equals(message.getSender().getId())
+                    || watermark.getLastReadMessageId() < message.getId()) {
+                continue;
+            }
+            OffsetDateTime watermarkReadAt = watermark.getLastReadAt();
+            if (readAt == null || (watermarkReadAt != null && watermarkReadAt.isBefore(readAt))) {
+                readAt = watermarkReadAt != null ? watermarkReadAt : message.getCreatedAt();
+            }
+        }
+        return readAt;
+    }
+}
@@ -1,142 +1,131 @@
 package com.nazran.chat.service.impl;
 
 import com.nazran.chat.dto.response.UserPresenceResponse;
-import com.nazran.chat.entity.User;
-import com.nazran.chat.entity.UserPresence;
-import com.nazran.chat.exception.CustomMessagePresentException;
-import com.nazran.chat.repository.UserPresenceRepository;
+import com.nazran.chat.realtime.PresenceBroadcaster;
+import com.nazran.chat.realtime.PresenceRegistry;
+import com.nazran.chat.realtime.PresenceSnapshot;
+import com.nazran.chat.realtime.PresenceSweeper;
 import com.nazran.chat.repository.UserRepository;
 import com.nazran.chat.service.UserPresenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * Implementation of UserPresenceService.
  * Handles user online/offline status tracking.
+ * Presence is served from the in-memory {@link PresenceRegistry}, which writes
+ * changes behind to the database in batches. Only online/offline transitions are
+ * broadcast, through the {@link PresenceBroadcaster}. Online users are tracked by the
+ * {@link PresenceSweeper}, which takes them offline when their heartbeats stop.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserPresenceServiceImpl implements UserPresenceService {
 
-    private final UserPresenceRepository presenceRepository;
+    private final PresenceRegistry presenceRegistry;
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final PresenceSweeper presenceSweeper;
     private final UserRepository chatUserRepository;
-    private final SimpMessagingTemplate messagingTemplate;
 
     @Override
-    @Transactional
     public void updateUserPresence(Integer userId, Boolean isOnline, String deviceInfo) {
-        log.info("Updating presence for user ID: {} to {}", userId, isOnline ? "online" : "offline");
-
-        User user = chatUserRepository.findById(userId)
-                .orElseThrow(() -> new CustomMessagePresentException("User not found"));
-
-        UserPresence presence = presenceRepository.findByUserId(userId)
-                .orElseGet(() -> {
-                    UserPresence newPresence = new UserPresence();
-                    newPresence.setUser(user);
-                    return newPresence;
-                });
-
-        presence.setIsOnline(isOnline);
-        presence.setLastSeen(OffsetDateTime.now(ZoneOffset.UTC));
-        if (deviceInfo != null) {
-            presence.setDeviceInfo(deviceInfo);
+        log.debug("Updating presence for user ID: {} to {}", userId, isOnline ? "online" : "offline");
+
+        boolean transitioned;
+        if (Boolean.TRUE.equals(isOnline)) {
+            transitioned = presenceRegistry.markOnline(userId, deviceInfo);
+            presenceSweeper.touch(userId);
+        } else {
+            transitioned = presenceRegistry.markOffline(userId);
+            presenceSweeper.cancel(userId);
         }
 
-        presenceRepository.save(presence);
-
-        log.info("User presence updated successfully");
-
-        // Broadcast presence update via WebSocket
-        broadcastPresenceUpdate(user, isOnline);
+        // Heartbeats that do not change the online status are not broadcast
+        if (transitioned) {
+            presenceBroadcaster.enqueue(userId);
+        }
     }
 
     @Override
-    @Transactional(readOnly = true)
     public UserPresenceResponse getUserPresence(Integer userId) {
-        UserPresence presence = presenceRepository.findByUserId(userId)
-                .orElse(null);
-
-        if (presence == null) {
-            return UserPresenceResponse.builder()
-                    .userId(userId)
-                    .isOnline(false)
-                    .build();
-        }
+        return presenceRegistry.get(userId)
+                .map(this::mapToPresenceResponse)
+                .orElseGet(() -> offlinePresence(userId));
+    }
 
-        return mapToPresenceResponse(presence);
+    @Override
+    public Map<Integer, UserPresenceResponse> getUserPresences(Collection<Integer> userIds) {
+        Map<Integer, UserPresenceResponse> presences = new HashMap<>();
+        for (Integer userId : userIds) {
+            presences.put(userId, getUserPresence(userId));
+        }
+        return presences;
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<UserPresenceResponse> getOnlineUsers() {
-        List<UserPresence> onlinePresences = presenceRepository.findByIsOnlineTrue();
-        return onlinePresences.stream()
+        return presenceRegistry.getOnline().stream()
                 .map(this::mapToPresenceResponse)
                 .collect(Collectors.toList());
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<UserPresenceResponse> getOnlineSuperAdmins() {
-        List<UserPresence> onlineAdmins = presenceRepository.findOnlineByRoleName("SUPER_ADMIN");
-        return onlineAdmins.stream()
+        Set<Integer> superAdminIds = new HashSet<>(chatUserRepository.findActiveSuperAdminIds());
+        return presenceRegistry.getOnline().stream()
+                .filter(snapshot -> superAdminIds.contains(snapshot.getUserId()))
                 .map(this::mapToPresenceResponse)
                 .collect(Collectors.toList());
     }
 
     @Override
-    @Transactional
+    public boolean isUserOnline(Integer userId) {
+        return presenceRegistry.isOnline(userId);
+    }
+
+    @Override
     public void markUserOffline(Integer userId) {
         log.info("Marking user ID: {} as offline", userId);
 
-        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
-        presenceRepository.updateOnlineStatus(userId, false, now);
-
-        User user = chatUserRepository.findById(userId)
-                .orElseThrow(() -> new CustomMessagePresentException("User not found"));
-
-        // Broadcast offline status
-        broadcastPresenceUpdate(user, false);
+        presenceSweeper.cancel(userId);
+        if (presenceRegistry.markOffline(userId)) {
+            presenceBroadcaster.enqueue(userId);
+        }
     }
 
     // =====================================================
     // Helper Methods
     // =====================================================
 
-    private UserPresenceResponse mapToPresenceResponse(UserPresence presence) {
+    private UserPresenceResponse mapToPresenceResponse(PresenceSnapshot presence) {
         String lastSeen = null;
         if (presence.getLastSeen() != null) {
             lastSeen = presence.getLastSeen().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
         }
 
         return UserPresenceResponse.builder()
-                .userId(presence.getUser().getId())
-                .isOnline(presence.getIsOnline())
+                .userId(presence.getUserId())
+                .isOnline(presence.isOnline())
                 .lastSeen(lastSeen)
                 .deviceInfo(presence.getDeviceInfo())
                 .build();
     }
 
-    private void broadcastPresenceUpdate(User user, Boolean isOnline) {
-        // Broadcast to all users
-        messagingTemplate.convertAndSend(
-                "/topic/presence",
-                UserPresenceResponse.builder()
-                        .userId(user.getId())
-                        .isOnline(isOnline)
-                        .lastSeen(OffsetDateTime.now(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
-                        .build()
-        );
+    private UserPresenceResponse offlinePresence(Integer userId) {
+        return UserPresenceResponse.builder()
+                .userId(userId)
+                .isOnline(false)
+                .build();
     }
 }
@@ -0,0 +1,30 @@
+-- =====================================================
+-- Migration: V12__add_last_message_to_conversations.sql
+-- Description: Denormalize the last message pointer and preview onto conversations
+-- =====================================================
+
+-- Add last message columns
+ALTER TABLE chat.conversations
+    ADD COLUMN IF NOT EXISTS last_message_id INT NULL,
+    ADD COLUMN IF NOT EXISTS last_message_preview VARCHAR(255) NULL;
+
+-- Foreign key constraint
+ALTER TABLE chat.conversations
+    ADD CONSTRAINT fk_conversations_last_message FOREIGN KEY (last_message_id)
+        REFERENCES chat.messages(id) ON DELETE SET NULL;
+
+-- Backfill from the latest message of every conversation
+UPDATE chat.conversations c
+SET last_message_id = lm.id,
+    last_message_preview = LEFT(lm.content, 255),
+    last_message_at = COALESCE(c.last_message_at, lm.created_at)
+FROM (
+    SELECT DISTINCT ON (conversation_id) id, conversation_id, content, created_at
+    FROM chat.messages
+    ORDER BY conversation_id, created_at DESC, id DESC
+) lm
+WHERE lm.conversation_id = c.id;
+
+-- Add comments
+COMMENT ON COLUMN chat.conversations.last_message_id IS 'Latest message of the conversation, maintained on send and delete';
+COMMENT ON COLUMN chat.conversations.last_message_preview IS 'Truncated content of the latest message';
@@ -0,0 +1,36 @@
+-- =====================================================
+-- Migration: V13__add_read_watermarks.sql
+-- Description: Track read state as a per-participant last read message watermark
+-- =====================================================
+
+-- Add watermark columns
+ALTER TABLE chat.conversation_unread_count
+    ADD COLUMN IF NOT EXISTS last_read_message_id INT NULL,
+    ADD COLUMN IF NOT EXISTS last_read_at TIMESTAMP WITH TIME ZONE NULL;
+
+-- Backfill watermarks from the legacy per-message read flags
+INSERT INTO chat.conversation_unread_count (conversation_id, user_id, unread_count, last_read_message_id, last_read_at)
+SELECT p.conversation_id, p.user_id, 0, MAX(m.id), MAX(m.read_at)
+FROM (
+    SELECT id AS conversation_id, customer_id AS user_id FROM chat.conversations
+    UNION
+    SELECT id, super_admin_id FROM chat.conversations WHERE super_admin_id IS NOT NULL
+) p
+JOIN chat.messages m ON m.conversation_id = p.conversation_id
+    AND m.sender_id <> p.user_id
+    AND m.is_read = TRUE
+GROUP BY p.conversation_id, p.user_id
+ON CONFLICT (conversation_id, user_id) DO UPDATE SET
+    last_read_message_id = EXCLUDED.last_read_message_id,
+    last_read_at = EXCLUDED.last_read_at;
+
+-- The per-message read flags are no longer written; drop the index maintained for them.
+-- The columns are kept until every running instance reads from the watermark, then
+-- they can be dropped in a follow-up migration.
+DROP INDEX IF EXISTS chat.idx_messages_read_status;
+
+-- Add comments
+COMMENT ON COLUMN chat.conversation_unread_count.last_read_message_id IS 'Latest message read by the user; messages up to this ID count as read';
+COMMENT ON COLUMN chat.conversation_unread_count.last_read_at IS 'When the read watermark last advanced';
+COMMENT ON COLUMN chat.messages.is_read IS 'Deprecated: superseded by conversation_unread_count.last_read_message_id, no longer maintained';
+COMMENT ON COLUMN chat.messages.read_at IS 'Deprecated: superseded by conversation_unread_count.last_read_at, no longer maintained';
@@ -0,0 +1,10 @@
+-- =====================================================
+-- Migration: V14__add_media_storage_reference_index.sql
+-- Description: Index media storage by reference for batched attachment lookups
+-- =====================================================
+
+-- Serves reference ID IN (...) lookups and attachment listings ordered by reference
+CREATE INDEX IF NOT EXISTS idx_media_storage_reference ON chat.media_storage(reference_type, reference_id);
+
+-- Add comment
+COMMENT ON INDEX chat.idx_media_storage_reference IS 'Lookup of attachments by referencing entity';
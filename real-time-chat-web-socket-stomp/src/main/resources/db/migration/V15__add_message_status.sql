@@ -0,0 +1,14 @@
+-- =====================================================
+-- Migration: V15__add_message_status.sql
+-- Description: Track delivery status of messages whose attachment is uploaded asynchronously
+-- =====================================================
+
+-- Create message_status enum type
+CREATE TYPE chat.message_status AS ENUM ('PENDING', 'SENT', 'FAILED');
+
+-- Add status column; existing messages are already delivered
+ALTER TABLE chat.messages
+    ADD COLUMN IF NOT EXISTS status chat.message_status NOT NULL DEFAULT 'SENT';
+
+-- Add comment
+COMMENT ON COLUMN chat.messages.status IS 'PENDING while the attachment uploads, SENT once delivered, FAILED if the upload failed';
@@ -0,0 +1,24 @@
+-- =====================================================
+-- Migration: V16__add_full_text_search.sql
+-- Description: Index message content and participant names for conversation search
+-- =====================================================
+
+-- Trigram matching for participant names
+CREATE EXTENSION IF NOT EXISTS pg_trgm SCHEMA public;
+
+-- Search vector of the message content, maintained by the database
+ALTER TABLE chat.messages
+    ADD COLUMN IF NOT EXISTS content_tsv tsvector
+        GENERATED ALWAYS AS (to_tsvector('simple', content)) STORED;
+
+-- Full-text index, system messages are never searched
+CREATE INDEX IF NOT EXISTS idx_messages_content_tsv ON chat.messages
+    USING GIN (content_tsv) WHERE message_type <> 'SYSTEM';
+
+-- Trigram index on the full name of users
+CREATE INDEX IF NOT EXISTS idx_users_full_name_trgm ON chat.users
+    USING GIN ((first_name || ' ' || last_name) public.gin_trgm_ops);
+
+-- Add comments
+COMMENT ON COLUMN chat.messages.content_tsv IS 'Full-text search vector of content (simple configuration)';
+COMMENT ON INDEX chat.idx_users_full_name_trgm IS 'Trigram index for participant name search';
@@ -0,0 +1,168 @@
+-- =====================================================
+-- Migration: V17__partition_messages_by_month.sql
+-- Description: Range partition messages by month on created_at, with an archive schema for cold partitions
+-- =====================================================
+
+-- Schema receiving detached partitions
+CREATE SCHEMA IF NOT EXISTS chat_archive;
+
+-- Creates the missing monthly partitions covering p_from to p_to (inclusive months).
+-- Partition bounds are UTC month starts; partitions already archived are not recreated.
+CREATE OR REPLACE FUNCTION chat.create_message_partitions(p_from DATE, p_to DATE)
+RETURNS INT
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    month_start DATE := date_trunc('month', p_from)::DATE;
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('chat.messages.partitions'));
+
+    WHILE month_start <= p_to LOOP
+        partition_name := 'messages_p' || to_char(month_start, 'YYYYMM');
+
+        IF to_regclass('chat.' || partition_name) IS NULL
+                AND to_regclass('chat_archive.' || partition_name) IS NULL THEN
+            EXECUTE format(
+                'CREATE TABLE chat.%I PARTITION OF chat.messages FOR VALUES FROM (%L) TO (%L)',
+                partition_name,
+                month_start::TIMESTAMP AT TIME ZONE 'UTC',
+                (month_start + INTERVAL '1 month')::TIMESTAMP AT TIME ZONE 'UTC');
+            created := created + 1;
+        END IF;
+
+        month_start := (month_start + INTERVAL '1 month')::DATE;
+    END LOOP;
+
+    RETURN created;
+END;
+$$;
+
+-- Detaches every monthly partition ending on or before p_before and moves it to chat_archive.
+-- Conversation last message pointers into the partition are cleared (the preview is kept),
+-- and the archived copy keeps only its primary key index.
+CREATE OR REPLACE FUNCTION chat.archive_message_partitions(p_before DATE)
+RETURNS INT
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    partition RECORD;
+    archived_index RECORD;
+    archived INT := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('chat.messages.partitions'));
+
+    FOR partition IN
+        SELECT c.relname
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'chat.messages'::regclass
+          AND c.relname ~ '^messages_p[0-9]{6}$'
+          AND to_date(substring(c.relname FROM 11), 'YYYYMM') + INTERVAL '1 month' <= p_before
+        ORDER BY c.relname
+    LOOP
+        EXECUTE format(
+            'UPDATE chat.conversations SET last_message_id = NULL WHERE last_message_id IN (SELECT id FROM chat.%I)',
+            partition.relname);
+        EXECUTE format('ALTER TABLE chat.messages DETACH PARTITION chat.%I', partition.relname);
+        EXECUTE format('ALTER TABLE chat.%I SET SCHEMA chat_archive', partition.relname);
+
+        FOR archived_index IN
+            SELECT ci.relname
+            FROM pg_index x
+            JOIN pg_class ci ON ci.oid = x.indexrelid
+            WHERE x.indrelid = format('chat_archive.%I', partition.relname)::regclass
+              AND NOT x.indisprimary
+        LOOP
+            EXECUTE format('DROP INDEX chat_archive.%I', archived_index.relname);
+        END LOOP;
+
+        -- Archived partitions are read-only: pack pages fully and skip autovacuum
+        EXECUTE format('ALTER TABLE chat_archive.%I SET (fillfactor = 100, autovacuum_enabled = false)',
+            partition.relname);
+
+        archived := archived + 1;
+    END LOOP;
+
+    RETURN archived;
+END;
+$$;
+
+-- A partitioned table cannot be referenced by a foreign key on id alone;
+-- the last message pointer is maintained by the application
+ALTER TABLE chat.conversations DROP CONSTRAINT IF EXISTS fk_conversations_last_message;
+
+-- Move the heap table aside and release its identity sequence
+ALTER TABLE chat.messages RENAME TO messages_unpartitioned;
+ALTER TABLE chat.messages_unpartitioned RENAME CONSTRAINT messages_pkey TO messages_unpartitioned_pkey;
+ALTER TABLE chat.messages_unpartitioned ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+CREATE SEQUENCE chat.messages_id_seq AS INT;
+
+-- Create partitioned messages table
+CREATE TABLE chat.messages (
+    id INT NOT NULL DEFAULT nextval('chat.messages_id_seq'),
+    conversation_id INT NOT NULL,
+    sender_id INT NOT NULL,
+    content TEXT NOT NULL,
+    message_type chat.message_type NOT NULL DEFAULT 'TEXT',
+    is_read BOOLEAN NOT NULL DEFAULT FALSE,
+    read_at TIMESTAMP WITH TIME ZONE NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC'),
+    updated_at TIMESTAMP WITH TIME ZONE NULL,
+    status chat.message_status NOT NULL DEFAULT 'SENT',
+    content_tsv tsvector GENERATED ALWAYS AS (to_tsvector('simple', content)) STORED,
+
+    -- The partition key must be part of the primary key; IDs stay unique through the sequence
+    CONSTRAINT messages_pkey PRIMARY KEY (id, created_at),
+
+    -- Foreign key constraints
+    CONSTRAINT fk_messages_conversation FOREIGN KEY (conversation_id)
+        REFERENCES chat.conversations(id) ON DELETE CASCADE,
+    CONSTRAINT fk_messages_sender FOREIGN KEY (sender_id)
+        REFERENCES chat.users(id) ON DELETE CASCADE
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE chat.messages_id_seq OWNED BY chat.messages.id;
+
+-- Partitions from the oldest message up to three months ahead
+DO $$
+DECLARE
+    first_month DATE;
+BEGIN
+    SELECT COALESCE(
+               date_trunc('month', MIN(created_at AT TIME ZONE 'UTC'))::DATE,
+               date_trunc('month', CURRENT_DATE)::DATE)
+    INTO first_month
+    FROM chat.messages_unpartitioned;
+
+    PERFORM chat.create_message_partitions(first_month, (CURRENT_DATE + INTERVAL '3 months')::DATE);
+END;
+$$;
+
+-- Copy existing messages, routed to their partitions
+INSERT INTO chat.messages (id, conversation_id, sender_id, content, message_type, is_read, read_at,
+                           created_at, updated_at, status)
+SELECT id, conversation_id, sender_id, content, message_type, is_read, read_at,
+       created_at, updated_at, status
+FROM chat.messages_unpartitioned;
+
+SELECT setval('chat.messages_id_seq', COALESCE((SELECT MAX(id) FROM chat.messages), 0) + 1, false);
+
+DROP TABLE chat.messages_unpartitioned;
+
+-- Create indexes on the partitioned table, inherited by every partition.
+-- The conversation_id and created_at indexes are covered by the composite index and by pruning.
+CREATE INDEX idx_messages_conversation_created ON chat.messages(conversation_id, created_at DESC);
+CREATE INDEX idx_messages_sender_id ON chat.messages(sender_id);
+CREATE INDEX idx_messages_content_tsv ON chat.messages
+    USING GIN (content_tsv) WHERE message_type <> 'SYSTEM';
+
+-- Add comments
+COMMENT ON TABLE chat.messages IS 'Stores individual messages in conversations, range partitioned by month on created_at';
+COMMENT ON COLUMN chat.messages.is_read IS 'Deprecated: superseded by conversation_unread_count.last_read_message_id, no longer maintained';
+COMMENT ON COLUMN chat.messages.read_at IS 'Deprecated: superseded by conversation_unread_count.last_read_at, no longer maintained';
+COMMENT ON COLUMN chat.messages.status IS 'PENDING while the attachment uploads, SENT once delivered, FAILED if the upload failed';
+COMMENT ON COLUMN chat.messages.content_tsv IS 'Full-text search vector of content (simple configuration)';
+COMMENT ON SCHEMA chat_archive IS 'Detached message partitions older than the retention window';
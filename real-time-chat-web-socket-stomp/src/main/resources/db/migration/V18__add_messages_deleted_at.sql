@@ -0,0 +1,20 @@
+-- =====================================================
+-- Migration: V18__add_messages_deleted_at.sql
+-- Description: Record soft deletion of messages in deleted_at and index it for reconnect resync
+-- =====================================================
+
+-- Add deletion time, propagated to every partition
+ALTER TABLE chat.messages ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP WITH TIME ZONE NULL;
+
+-- Backfill messages soft deleted before the column existed; their last update was the deletion
+UPDATE chat.messages
+SET deleted_at = COALESCE(updated_at, created_at)
+WHERE message_type = 'SYSTEM' AND content = '[Message deleted]' AND deleted_at IS NULL;
+
+-- Only deleted messages are indexed; the partial index stays small on every partition
+CREATE INDEX IF NOT EXISTS idx_messages_deleted ON chat.messages(conversation_id, deleted_at)
+    WHERE deleted_at IS NOT NULL;
+
+-- Add comments
+COMMENT ON COLUMN chat.messages.deleted_at IS 'When the sender deleted the message, NULL while it exists';
+COMMENT ON INDEX chat.idx_messages_deleted IS 'Lookup of messages deleted since a point in time, per conversation';
@@ -0,0 +1,17 @@
+-- =====================================================
+-- Migration: V19__track_pending_attachment_uploads.sql
+-- Description: Record which instance run uploads a PENDING message and index PENDING messages for the sweeps
+-- =====================================================
+
+-- Instance and run that upload the attachment; messages of a run that stopped lost their upload
+ALTER TABLE chat.messages ADD COLUMN IF NOT EXISTS upload_instance_id VARCHAR(64) NULL;
+ALTER TABLE chat.messages ADD COLUMN IF NOT EXISTS upload_run_id UUID NULL;
+
+-- Only a handful of messages are ever PENDING; the partial index stays tiny on every partition
+CREATE INDEX IF NOT EXISTS idx_messages_pending ON chat.messages(created_at)
+    WHERE status = 'PENDING';
+
+-- Add comments
+COMMENT ON COLUMN chat.messages.upload_instance_id IS 'Instance uploading the attachment of the message';
+COMMENT ON COLUMN chat.messages.upload_run_id IS 'Run of the instance uploading the attachment of the message';
+COMMENT ON INDEX chat.idx_messages_pending IS 'Lookup of messages stuck in PENDING';
@@ -0,0 +1,145 @@
+package com.nazran.chat.realtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nazran.chat.dto.response.MessageResponse;
+import com.nazran.chat.enums.MessageStatus;
+import com.nazran.chat.enums.MessageType;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares JSON with the negotiable payload encodings for a single chat message and for a page
+ * of history, going through {@link PayloadEncodingNegotiator} as the outbound channel does.
+ * <p>
+ * Logs the frame sizes, the server side encode cost (JSON serialization, plus the negotiator
+ * transcode for binary encodings) and the client side parse cost of each encoding, and checks
+ * that the binary frames are smaller and decode back to the same document.
+ */
+class PayloadEncodingComparisonTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PayloadEncodingComparisonTest.class);
+
+    private static final int HISTORY_SIZE = 50;
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int ITERATIONS = 2_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final OutboundSessionQueues outboundSessionQueues = mock(OutboundSessionQueues.class);
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private final MessageHandler handler = mock(MessageHandler.class);
+    private final PayloadEncodingNegotiator negotiator =
+            new PayloadEncodingNegotiator(outboundSessionQueues, objectMapper);
+
+    PayloadEncodingComparisonTest() {
+        when(outboundSessionQueues.isBinaryCapable(anyString())).thenReturn(true);
+        connect(PayloadEncoding.CBOR, "application/cbor");
+        connect(PayloadEncoding.SMILE, "application/x-jackson-smile");
+    }
+
+    @Test
+    void comparesSingleMessage() throws IOException {
+        compare("message", message(1));
+    }
+
+    @Test
+    void comparesHistoryPage() throws IOException {
+        compare("history", IntStream.rangeClosed(1, HISTORY_SIZE).mapToObj(this::message).toList());
+    }
+
+    private void compare(String label, Object body) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(body);
+        long jsonEncodeNanos = time(() -> objectMapper.writeValueAsBytes(body));
+        long jsonParseNanos = time(() -> objectMapper.readTree(json));
+        log.info("{} JSON:  {} B, encode {} ns, parse {} ns", label, json.length, jsonEncodeNanos, jsonParseNanos);
+
+        for (PayloadEncoding encoding : PayloadEncoding.values()) {
+            byte[] encoded = (byte[]) send(encoding, json).getPayload();
+            ObjectMapper binaryMapper = new ObjectMapper(encoding.getFactory());
+
+            // A fresh JSON array per iteration, so the negotiator's identity cache is not hit.
+            long encodeNanos = time(() -> send(encoding, objectMapper.writeValueAsBytes(body)));
+            long parseNanos = time(() -> binaryMapper.readTree(encoded));
+            log.info("{} {}: {} B ({}%), encode {} ns, parse {} ns", label, encoding, encoded.length,
+                    String.format("%+.0f", 100.0 * (encoded.length - json.length) / json.length),
+                    encodeNanos, parseNanos);
+
+            assertThat(encoded.length).isLessThan(json.length);
+            assertThat(binaryMapper.readTree(encoded)).isEqualTo(objectMapper.readTree(json));
+        }
+    }
+
+    private long time(Task task) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private void connect(PayloadEncoding encoding, String accept) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(encoding.name());
+        accessor.setNativeHeader(PayloadEncodingNegotiator.ACCEPT_HEADER, accept);
+        negotiator.inboundInterceptor().preSend(
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), channel);
+    }
+
+    private Message<?> send(PayloadEncoding encoding, byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(encoding.name());
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        Message<?> message = MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+        return negotiator.outboundInterceptor().beforeHandle(message, channel, handler);
+    }
+
+    private MessageResponse message(int id) {
+        OffsetDateTime createdAt = OffsetDateTime.of(2024, 11, 20, 9, 30, 0, 0, ZoneOffset.UTC).plusMinutes(id);
+        return MessageResponse.builder()
+                .id(1_000 + id)
+                .conversationId(42)
+                .senderId(id % 2 == 0 ? 7 : 12)
+                .senderName(id % 2 == 0 ? "Maria Hernandez" : "Support Team")
+                .senderRole(id % 2 == 0 ? "CUSTOMER" : "SUPER_ADMIN")
+                .content("Thanks, I checked the order again and the delivery window still shows tomorrow morning.")
+                .messageType(MessageType.TEXT)
+                .status(MessageStatus.SENT)
+                .isRead(id < HISTORY_SIZE)
+                .readAt(id < HISTORY_SIZE ? createdAt.plusSeconds(40) : null)
+                .attachments(List.of())
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .build();
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws IOException;
+    }
+}
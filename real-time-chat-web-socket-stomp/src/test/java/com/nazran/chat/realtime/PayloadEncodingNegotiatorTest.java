@@ -0,0 +1,175 @@
+package com.nazran.chat.realtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nazran.chat.dto.response.MessageResponse;
+import com.nazran.chat.enums.MessageStatus;
+import com.nazran.chat.enums.MessageType;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that {@link PayloadEncodingNegotiator} records the encoding asked for on CONNECT
+ * and transcodes outbound JSON bodies of opted-in native WebSocket sessions only.
+ */
+class PayloadEncodingNegotiatorTest {
+
+    private static final String NATIVE_SESSION = "native-session";
+    private static final String SOCKJS_SESSION = "sockjs-session";
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final OutboundSessionQueues outboundSessionQueues = mock(OutboundSessionQueues.class);
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private final MessageHandler handler = mock(MessageHandler.class);
+    private final PayloadEncodingNegotiator negotiator =
+            new PayloadEncodingNegotiator(outboundSessionQueues, objectMapper);
+
+    PayloadEncodingNegotiatorTest() {
+        when(outboundSessionQueues.isBinaryCapable(NATIVE_SESSION)).thenReturn(true);
+        when(outboundSessionQueues.isBinaryCapable(SOCKJS_SESSION)).thenReturn(false);
+    }
+
+    @Test
+    void transcodesJsonForNegotiatedNativeSession() throws IOException {
+        for (PayloadEncoding encoding : PayloadEncoding.values()) {
+            String sessionId = NATIVE_SESSION + "-" + encoding;
+            when(outboundSessionQueues.isBinaryCapable(sessionId)).thenReturn(true);
+            connect(sessionId, encoding == PayloadEncoding.CBOR ? "application/cbor" : "application/x-jackson-smile");
+
+            byte[] json = objectMapper.writeValueAsBytes(message());
+            Message<?> sent = send(sessionId, json, MimeTypeUtils.APPLICATION_JSON);
+
+            assertThat(sent.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo(encoding.getFrameContentType());
+            byte[] encoded = (byte[]) sent.getPayload();
+            assertThat(encoded.length).isLessThan(json.length);
+            assertThat(new ObjectMapper(encoding.getFactory()).readTree(encoded)).isEqualTo(objectMapper.readTree(json));
+        }
+    }
+
+    @Test
+    void keepsJsonForSockJsSession() throws IOException {
+        connect(SOCKJS_SESSION, "application/x-jackson-smile");
+
+        Message<?> message = outbound(SOCKJS_SESSION, objectMapper.writeValueAsBytes(message()), MimeTypeUtils.APPLICATION_JSON);
+
+        assertThat(negotiator.outboundInterceptor().beforeHandle(message, channel, handler)).isSameAs(message);
+    }
+
+    @Test
+    void keepsJsonWhenClientPrefersJsonOrDoesNotAsk() throws IOException {
+        when(outboundSessionQueues.isBinaryCapable("silent-session")).thenReturn(true);
+        connect(NATIVE_SESSION, "application/json, application/cbor");
+        connect("silent-session", null);
+
+        byte[] json = objectMapper.writeValueAsBytes(message());
+        for (String sessionId : List.of(NATIVE_SESSION, "silent-session")) {
+            Message<?> message = outbound(sessionId, json, MimeTypeUtils.APPLICATION_JSON);
+            assertThat(negotiator.outboundInterceptor().beforeHandle(message, channel, handler)).isSameAs(message);
+        }
+    }
+
+    @Test
+    void leavesNonJsonBodiesAlone() {
+        connect(NATIVE_SESSION, "application/cbor");
+
+        Message<?> message = outbound(NATIVE_SESSION, "pong".getBytes(), MimeTypeUtils.TEXT_PLAIN);
+
+        assertThat(negotiator.outboundInterceptor().beforeHandle(message, channel, handler)).isSameAs(message);
+    }
+
+    @Test
+    void transcodesSharedPayloadOnceForAllSubscribers() throws IOException {
+        when(outboundSessionQueues.isBinaryCapable("other-session")).thenReturn(true);
+        connect(NATIVE_SESSION, "application/cbor");
+        connect("other-session", "application/cbor");
+
+        byte[] json = objectMapper.writeValueAsBytes(message());
+
+        assertThat(send(NATIVE_SESSION, json, MimeTypeUtils.APPLICATION_JSON).getPayload())
+                .isSameAs(send("other-session", json, MimeTypeUtils.APPLICATION_JSON).getPayload());
+    }
+
+    @Test
+    void forgetsEncodingOnDisconnect() throws IOException {
+        connect(NATIVE_SESSION, "application/cbor");
+        negotiator.onDisconnect(new SessionDisconnectEvent(this,
+                MessageBuilder.withPayload(new byte[0]).build(), NATIVE_SESSION, CloseStatus.NORMAL));
+
+        Message<?> message = outbound(NATIVE_SESSION, objectMapper.writeValueAsBytes(message()), MimeTypeUtils.APPLICATION_JSON);
+
+        assertThat(negotiator.outboundInterceptor().beforeHandle(message, channel, handler)).isSameAs(message);
+    }
+
+    @Test
+    void negotiatesFirstSupportedMediaType() {
+        assertThat(PayloadEncoding.negotiate("application/x-jackson-smile, application/cbor"))
+                .isEqualTo(PayloadEncoding.SMILE);
+        assertThat(PayloadEncoding.negotiate("application/cbor;q=1")).isEqualTo(PayloadEncoding.CBOR);
+        assertThat(PayloadEncoding.negotiate("application/json, application/cbor")).isNull();
+        assertThat(PayloadEncoding.negotiate("text/plain")).isNull();
+        assertThat(PayloadEncoding.negotiate(null)).isNull();
+    }
+
+    private void connect(String sessionId, String accept) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        if (accept != null) {
+            accessor.setNativeHeader(PayloadEncodingNegotiator.ACCEPT_HEADER, accept);
+        }
+        negotiator.inboundInterceptor().preSend(
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), channel);
+    }
+
+    private Message<?> send(String sessionId, byte[] payload, MimeType contentType) {
+        return negotiator.outboundInterceptor().beforeHandle(outbound(sessionId, payload, contentType), channel, handler);
+    }
+
+    private Message<?> outbound(String sessionId, byte[] payload, MimeType contentType) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setContentType(contentType);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private MessageResponse message() {
+        OffsetDateTime createdAt = OffsetDateTime.of(2024, 11, 20, 9, 30, 0, 0, ZoneOffset.UTC);
+        return MessageResponse.builder()
+                .id(1_001)
+                .conversationId(42)
+                .senderId(7)
+                .senderName("Maria Hernandez")
+                .senderRole("CUSTOMER")
+                .content("Thanks, I checked the order again and the delivery window still shows tomorrow morning.")
+                .messageType(MessageType.TEXT)
+                .status(MessageStatus.SENT)
+                .isRead(true)
+                .readAt(createdAt.plusSeconds(40))
+                .attachments(List.of())
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .build();
+    }
+}